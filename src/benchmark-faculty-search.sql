@@ -0,0 +1,26 @@
+-- Бенчмарк поиска факультетов по подстроке на 500 000 строк
+-- Запуск: psql -d hogwarts -f src/benchmark-faculty-search.sql
+
+-- Наполняем таблицу тестовыми данными (уникальные названия, 8 цветов)
+INSERT INTO faculty (id, name, color)
+SELECT nextval('faculty_seq'), 'bench_faculty_' || md5(g::text),
+       (ARRAY['красный', 'зеленый', 'синий', 'желтый', 'черный', 'белый', 'серый', 'фиолетовый'])[1 + g % 8]
+FROM generate_series(1, 500000) AS g;
+
+ANALYZE faculty;
+
+-- Было: findByNameIgnoreCaseContainingOrColorIgnoreCaseContaining — upper(..) LIKE '%..%', полное чтение таблицы
+EXPLAIN (ANALYZE, BUFFERS)
+SELECT f.id, f.name, f.color FROM faculty f
+WHERE upper(f.name) LIKE upper('%a1b2c%') OR upper(f.color) LIKE upper('%a1b2c%');
+
+-- Стало: searchByNameOrColor — BitmapOr по GIN-индексам idx_faculty_name_trgm и idx_faculty_color_trgm,
+-- сортировка по similarity() только для найденных строк
+EXPLAIN (ANALYZE, BUFFERS)
+SELECT f.* FROM faculty f
+WHERE lower(f.name) LIKE '%a1b2c%' OR lower(f.color) LIKE '%a1b2c%'
+ORDER BY GREATEST(similarity(lower(f.name), 'a1b2c'), similarity(lower(f.color), 'a1b2c')) DESC, f.id
+LIMIT 50 OFFSET 0;
+
+-- Удаляем тестовые данные
+DELETE FROM faculty WHERE name LIKE 'bench_faculty_%';
@@ -0,0 +1,23 @@
+-- Бенчмарк выборки студентов по возрасту на 1 000 000 строк
+-- Запуск: psql -d hogwarts -f src/benchmark-student-age.sql
+
+-- Наполняем таблицу тестовыми данными (возраст 16..45, уникальные имена)
+INSERT INTO student (id, name, age)
+SELECT nextval('student_seq'), 'bench_student_' || g, 16 + (g % 30)
+FROM generate_series(1, 1000000) AS g;
+
+ANALYZE student;
+
+-- Было: findAll() + фильтрация в Java — полное чтение таблицы
+EXPLAIN (ANALYZE, BUFFERS)
+SELECT s.id, s.name, s.age, s.faculty_id FROM student s;
+
+-- Стало: findByAgeOrderByIdAsc(age, PageRequest.of(0, 50)) — индекс idx_student_age
+EXPLAIN (ANALYZE, BUFFERS)
+SELECT s.id, s.name, s.age, s.faculty_id FROM student s
+WHERE s.age = 20
+ORDER BY s.id
+OFFSET 0 ROWS FETCH FIRST 50 ROWS ONLY;
+
+-- Удаляем тестовые данные
+DELETE FROM student WHERE name LIKE 'bench_student_%';
@@ -0,0 +1,107 @@
+package ru.hogwarts.school.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.util.FileSystemUtils;
+import ru.hogwarts.school.model.Avatar;
+import ru.hogwarts.school.model.Student;
+import ru.hogwarts.school.service.AvatarService;
+import ru.hogwarts.school.service.AvatarThumbnailService;
+import ru.hogwarts.school.service.StudentService;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+// Бенчмарк загрузки аватарки: новое содержимое (запись в хранилище) и повторное (дедупликация по хэшу).
+// Хранилище — временный каталог или БД (-p storageType=filesystem|database)
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class AvatarServiceBenchmark {
+
+    // Размер стороны картинки в пикселях
+    @Param({"256"})
+    public int imageSize;
+
+    @Param({"filesystem"})
+    public String storageType;
+
+    private ConfigurableApplicationContext context;
+    private JdbcTemplate jdbcTemplate;
+    private AvatarService avatarService;
+    private Path avatarsDir;
+    private Long studentId;
+    private byte[] image;
+    private long counter;
+    // Хэши записанного содержимого: при хранении в БД строки avatar_content удаляются после прогона
+    private final Set<String> hashes = new HashSet<>();
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        avatarsDir = Files.createTempDirectory("jmh-avatars");
+        context = BenchmarkApplication.start("avatars.dir.path=" + avatarsDir, "avatars.storage.type=" + storageType);
+        jdbcTemplate = context.getBean(JdbcTemplate.class);
+        avatarService = context.getBean(AvatarService.class);
+        Student student = context.getBean(StudentService.class).createStudent("Аватар jmh_avatar", 20);
+        studentId = student.getId();
+        image = png(imageSize);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        // Останавливаем генерацию миниатюр, чтобы она не дописала варианты после очистки
+        context.getBean(AvatarThumbnailService.class).shutdown();
+        jdbcTemplate.update("DELETE FROM avatar WHERE student_id = ?", studentId);
+        jdbcTemplate.update("DELETE FROM student WHERE id = ?", studentId);
+        // Содержимое и его миниатюры (<хэш>_<вариант>), если на него не ссылаются другие аватарки
+        List<Object[]> args = hashes.stream().map(hash -> new Object[]{hash, hash + "\\_%", hash}).toList();
+        jdbcTemplate.batchUpdate("DELETE FROM avatar_content WHERE (hash = ? OR hash LIKE ?) " +
+                "AND NOT EXISTS (SELECT 1 FROM avatar WHERE content_hash = ?)", args);
+        context.close();
+        FileSystemUtils.deleteRecursively(avatarsDir);
+    }
+
+    // Каждый вызов — новое содержимое: к PNG дописываются байты счетчика (декодеры их игнорируют)
+    @Benchmark
+    public Avatar saveNewAvatar() throws IOException {
+        byte[] content = Arrays.copyOf(image, image.length + Long.BYTES);
+        ByteBuffer.wrap(content, image.length, Long.BYTES).putLong(counter++);
+        Avatar avatar = avatarService.saveAvatar(new MockMultipartFile("file", "avatar.png", "image/png", content), studentId);
+        hashes.add(avatar.getContentHash());
+        return avatar;
+    }
+
+    @Benchmark
+    public Avatar saveSameAvatar() throws IOException {
+        Avatar avatar = avatarService.saveAvatar(new MockMultipartFile("file", "avatar.png", "image/png", image), studentId);
+        hashes.add(avatar.getContentHash());
+        return avatar;
+    }
+
+    private static byte[] png(int size) throws IOException {
+        BufferedImage img = new BufferedImage(size, size, BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < size; y++) {
+            for (int x = 0; x < size; x++) {
+                img.setRGB(x, y, (x * 31 + y * 17) & 0xFFFFFF);
+            }
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(img, "png", out);
+        return out.toByteArray();
+    }
+}
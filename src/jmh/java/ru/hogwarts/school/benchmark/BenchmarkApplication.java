@@ -0,0 +1,65 @@
+package ru.hogwarts.school.benchmark;
+
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.hogwarts.school.SchoolApplication;
+
+import java.util.stream.Stream;
+
+// Контекст приложения для бенчмарков: без веб-сервера, БД берется из spring.datasource.* (по умолчанию локальная hogwarts).
+// Другую БД передаем в форк JMH: -Djmh.args="-jvmArgsAppend -Dspring.datasource.url=jdbc:postgresql://... -rf json -rff ..."
+// Тестовые строки помечаются "jmh_" в имени и удаляются после прогона
+final class BenchmarkApplication {
+
+    private static final String STUDENT_MARKER = "jmh_";
+    private static final String FACULTY_MARKER = "jmh_faculty_";
+
+    private BenchmarkApplication() {
+    }
+
+    // Свойства передаются как аргументы командной строки, чтобы перекрыть application.properties
+    static ConfigurableApplicationContext start(String... properties) {
+        String[] args = Stream.concat(Stream.of("spring.main.banner-mode=off", "logging.level.root=WARN"), Stream.of(properties))
+                .map(property -> "--" + property)
+                .toArray(String[]::new);
+        return new SpringApplicationBuilder(SchoolApplication.class)
+                .web(WebApplicationType.NONE)
+                .run(args);
+    }
+
+    // Студенты возрастом 16..45, имена начинаются с разных букв (треть — с кириллической "А")
+    static void seedStudents(JdbcTemplate jdbcTemplate, int count) {
+        jdbcTemplate.update("INSERT INTO student (id, name, age) " +
+                "SELECT nextval('student_seq'), (ARRAY['Алиса', 'Борис', 'Вера'])[1 + g % 3] || ' " + STUDENT_MARKER + "' || g, " +
+                "16 + (g % 30) FROM generate_series(1, ?) AS g", count);
+        jdbcTemplate.execute("ANALYZE student");
+    }
+
+    static void deleteStudents(JdbcTemplate jdbcTemplate) {
+        jdbcTemplate.update("DELETE FROM student WHERE name LIKE ?", "% " + STUDENT_MARKER + "%");
+    }
+
+    // Факультеты с уникальными названиями и 8 цветами
+    static void seedFaculties(JdbcTemplate jdbcTemplate, int count) {
+        jdbcTemplate.update("INSERT INTO faculty (id, name, color) " +
+                "SELECT nextval('faculty_seq'), '" + FACULTY_MARKER + "' || md5(g::text), " +
+                "(ARRAY['красный', 'зеленый', 'синий', 'желтый', 'черный', 'белый', 'серый', 'фиолетовый'])[1 + g % 8] " +
+                "FROM generate_series(1, ?) AS g", count);
+        jdbcTemplate.execute("ANALYZE faculty");
+    }
+
+    // Распределяет тестовых студентов по тестовым факультетам по кругу (по остатку от id)
+    static void assignStudentsToFaculties(JdbcTemplate jdbcTemplate) {
+        jdbcTemplate.update("UPDATE student s SET faculty_id = f.id " +
+                "FROM (SELECT id, row_number() OVER (ORDER BY id) - 1 AS n, COUNT(*) OVER () AS total " +
+                "FROM faculty WHERE name LIKE ?) f " +
+                "WHERE s.name LIKE ? AND s.id % f.total = f.n", FACULTY_MARKER + "%", "% " + STUDENT_MARKER + "%");
+        jdbcTemplate.execute("ANALYZE student");
+    }
+
+    static void deleteFaculties(JdbcTemplate jdbcTemplate) {
+        jdbcTemplate.update("DELETE FROM faculty WHERE name LIKE ?", FACULTY_MARKER + "%");
+    }
+}
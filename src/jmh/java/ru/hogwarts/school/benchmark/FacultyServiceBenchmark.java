@@ -0,0 +1,52 @@
+package ru.hogwarts.school.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.hogwarts.school.model.Faculty;
+import ru.hogwarts.school.service.FacultyService;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Бенчмарк поиска факультетов по подстроке (-p faculties=..., -p searchType=trigram|ngram)
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class FacultyServiceBenchmark {
+
+    @Param({"10000"})
+    public int faculties;
+
+    @Param({"trigram", "ngram"})
+    public String searchType;
+
+    @Param({"a1b", "зелен"})
+    public String term;
+
+    private ConfigurableApplicationContext context;
+    private JdbcTemplate jdbcTemplate;
+    private FacultyService facultyService;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkApplication.start("faculties.search.type=" + searchType);
+        jdbcTemplate = context.getBean(JdbcTemplate.class);
+        facultyService = context.getBean(FacultyService.class);
+        BenchmarkApplication.seedFaculties(jdbcTemplate, faculties);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        BenchmarkApplication.deleteFaculties(jdbcTemplate);
+        context.close();
+    }
+
+    @Benchmark
+    public List<Faculty> searchFacultiesByNameOrColor() {
+        return facultyService.searchFacultiesByNameOrColor(term, 0, 50);
+    }
+}
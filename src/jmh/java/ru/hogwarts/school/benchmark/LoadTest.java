@@ -0,0 +1,166 @@
+package ru.hogwarts.school.benchmark;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Нагрузочный клиент для сравнения режимов потоков (платформенные и виртуальные, профиль virtual):
+// connections соединений, по каждому запросы идут подряд без пауз (замкнутый цикл) в течение duration
+// после прогрева warmup. Результат — пропускная способность, p50/p99/p99.9 задержек и число ошибок (исключения и 5xx),
+// в консоль и в JSON (target/load-<label>.json).
+// Запуск против запущенного приложения: mvn -P benchmark test-compile exec:exec@load-test -Dload.args="label=platform"
+// Аргументы key=value: url, paths (через запятую), connections, warmup, duration (секунды), label
+public final class LoadTest {
+
+    private LoadTest() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>(Map.of(
+                "url", "http://localhost:8080",
+                "paths", "/students?limit=20&after=0,/students/age/20,/students/count?mode=exact",
+                "connections", "5000",
+                "warmup", "10",
+                "duration", "30",
+                "label", "run"));
+        for (String arg : args) {
+            int eq = arg.indexOf('=');
+            if (eq <= 0) {
+                throw new IllegalArgumentException("Expected key=value: " + arg);
+            }
+            options.put(arg.substring(0, eq), arg.substring(eq + 1));
+        }
+
+        List<URI> targets = Arrays.stream(options.get("paths").split(","))
+                .map(path -> URI.create(options.get("url") + path.trim()))
+                .toList();
+        int connections = Integer.parseInt(options.get("connections"));
+        Duration warmup = Duration.ofSeconds(Long.parseLong(options.get("warmup")));
+        Duration duration = Duration.ofSeconds(Long.parseLong(options.get("duration")));
+
+        HttpClient client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(30))
+                .build();
+
+        System.out.printf("Load test '%s': %d connections, warmup %ds, duration %ds, %s%n",
+                options.get("label"), connections, warmup.toSeconds(), duration.toSeconds(), targets);
+        Run warmupRun = new Run(client, targets, connections, System.nanoTime() + warmup.toNanos());
+        warmupRun.await();
+        Run run = new Run(client, targets, connections, System.nanoTime() + duration.toNanos());
+        run.await();
+
+        Result result = run.result(duration);
+        System.out.println(result.format());
+        Path out = Path.of("target", "load-" + options.get("label") + ".json");
+        Files.createDirectories(out.getParent());
+        Files.writeString(out, result.toJson(options.get("label"), connections));
+        System.out.println("Result written to " + out);
+    }
+
+    // Один прогон: у каждого соединения свой список задержек, он меняется только его цепочкой запросов
+    private static final class Run {
+
+        private final HttpClient client;
+        private final List<URI> targets;
+        private final long deadline;
+        private final long[][] latencies;
+        private final int[] counts;
+        private final AtomicLong errors = new AtomicLong();
+        private final CountDownLatch finished;
+
+        private Run(HttpClient client, List<URI> targets, int connections, long deadline) {
+            this.client = client;
+            this.targets = targets;
+            this.deadline = deadline;
+            this.latencies = new long[connections][256];
+            this.counts = new int[connections];
+            this.finished = new CountDownLatch(connections);
+            for (int worker = 0; worker < connections; worker++) {
+                next(worker, 0);
+            }
+        }
+
+        private void next(int worker, long sent) {
+            if (System.nanoTime() >= deadline) {
+                finished.countDown();
+                return;
+            }
+            HttpRequest request = HttpRequest.newBuilder(targets.get((int) ((worker + sent) % targets.size())))
+                    .timeout(Duration.ofSeconds(60))
+                    .GET()
+                    .build();
+            long start = System.nanoTime();
+            // Продолжение в общем пуле, а не в вызывающем потоке: при мгновенной ошибке цепочка не растит стек
+            client.sendAsync(request, HttpResponse.BodyHandlers.discarding()).whenCompleteAsync((response, error) -> {
+                long latency = System.nanoTime() - start;
+                if (error != null || response.statusCode() >= 500) {
+                    errors.incrementAndGet();
+                } else {
+                    record(worker, latency);
+                }
+                next(worker, sent + 1);
+            });
+        }
+
+        private void record(int worker, long latency) {
+            if (counts[worker] == latencies[worker].length) {
+                latencies[worker] = Arrays.copyOf(latencies[worker], counts[worker] * 2);
+            }
+            latencies[worker][counts[worker]++] = latency;
+        }
+
+        private void await() throws InterruptedException {
+            if (!finished.await(5, TimeUnit.MINUTES)) {
+                throw new IllegalStateException("Requests did not complete in time");
+            }
+        }
+
+        private Result result(Duration duration) {
+            long[] all = new long[Arrays.stream(counts).sum()];
+            int offset = 0;
+            for (int worker = 0; worker < counts.length; worker++) {
+                System.arraycopy(latencies[worker], 0, all, offset, counts[worker]);
+                offset += counts[worker];
+            }
+            Arrays.sort(all);
+            return new Result(all.length, errors.get(), all.length / (duration.toNanos() / 1e9),
+                    percentile(all, 0.50), percentile(all, 0.99), percentile(all, 0.999),
+                    all.length > 0 ? all[all.length - 1] : 0);
+        }
+
+        private static long percentile(long[] sorted, double p) {
+            return sorted.length == 0 ? 0 : sorted[(int) Math.min(sorted.length - 1, Math.ceil(p * sorted.length) - 1)];
+        }
+    }
+
+    private record Result(long requests, long errors, double throughput, long p50, long p99, long p999, long max) {
+
+        String format() {
+            return String.format(Locale.ROOT, "requests=%d errors=%d throughput=%.1f req/s p50=%.2f ms p99=%.2f ms " +
+                    "p99.9=%.2f ms max=%.2f ms", requests, errors, throughput, ms(p50), ms(p99), ms(p999), ms(max));
+        }
+
+        String toJson(String label, int connections) {
+            return String.format(Locale.ROOT, "{\"label\":\"%s\",\"connections\":%d,\"requests\":%d,\"errors\":%d," +
+                            "\"throughput\":%.1f,\"p50Ms\":%.3f,\"p99Ms\":%.3f,\"p999Ms\":%.3f,\"maxMs\":%.3f}%n",
+                    label, connections, requests, errors, throughput, ms(p50), ms(p99), ms(p999), ms(max));
+        }
+
+        private static double ms(long nanos) {
+            return nanos / 1e6;
+        }
+    }
+}
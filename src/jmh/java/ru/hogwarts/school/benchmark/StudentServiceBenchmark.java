@@ -0,0 +1,67 @@
+package ru.hogwarts.school.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.hogwarts.school.model.Student;
+import ru.hogwarts.school.service.StudentAggregates;
+import ru.hogwarts.school.service.StudentNameIndex;
+import ru.hogwarts.school.service.StudentService;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Бенчмарки чтения студентов на таблице заданного размера (-p students=...)
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class StudentServiceBenchmark {
+
+    @Param({"10000"})
+    public int students;
+
+    private ConfigurableApplicationContext context;
+    private JdbcTemplate jdbcTemplate;
+    private StudentService studentService;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkApplication.start();
+        jdbcTemplate = context.getBean(JdbcTemplate.class);
+        studentService = context.getBean(StudentService.class);
+        BenchmarkApplication.seedStudents(jdbcTemplate, students);
+        // Данные вставлены в обход сервиса — перечитываем агрегаты и индекс имен
+        context.getBean(StudentAggregates.class).reconcile();
+        context.getBean(StudentNameIndex.class).rebuild();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        BenchmarkApplication.deleteStudents(jdbcTemplate);
+        context.close();
+    }
+
+    @Benchmark
+    public List<Student> getStudentsByAge() {
+        return studentService.getStudentsByAge(20, PageRequest.of(0, 50));
+    }
+
+    @Benchmark
+    public double getAverageAge() {
+        return studentService.getAverageAge();
+    }
+
+    @Benchmark
+    public List<String> getNamesStartingWithA() {
+        return studentService.getNamesStartingWithA();
+    }
+
+    @Benchmark
+    public List<Student> getAllStudents() {
+        return studentService.getAllStudents();
+    }
+}
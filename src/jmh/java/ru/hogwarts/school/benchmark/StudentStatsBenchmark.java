@@ -0,0 +1,112 @@
+package ru.hogwarts.school.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.hogwarts.school.dto.StudentStats;
+import ru.hogwarts.school.model.Student;
+import ru.hogwarts.school.repository.StudentRepository;
+import ru.hogwarts.school.service.StudentAgeSnapshot;
+import ru.hogwarts.school.service.StudentService;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.IntSummaryStatistics;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+// Статистика возрастов (-p students=... -p faculties=...): колоночный снимок с fork/join против потоков
+// над загруженными сущностями, как в прежнем getAverageAge (findAll + stream)
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class StudentStatsBenchmark {
+
+    @Param({"10000", "100000"})
+    public int students;
+
+    @Param({"8"})
+    public int faculties;
+
+    private ConfigurableApplicationContext context;
+    private JdbcTemplate jdbcTemplate;
+    private StudentService studentService;
+    private StudentRepository studentRepository;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkApplication.start();
+        jdbcTemplate = context.getBean(JdbcTemplate.class);
+        studentService = context.getBean(StudentService.class);
+        studentRepository = context.getBean(StudentRepository.class);
+        BenchmarkApplication.seedStudents(jdbcTemplate, students);
+        BenchmarkApplication.seedFaculties(jdbcTemplate, faculties);
+        BenchmarkApplication.assignStudentsToFaculties(jdbcTemplate);
+        // Данные вставлены в обход сервиса — перечитываем снимок
+        context.getBean(StudentAgeSnapshot.class).rebuild();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        BenchmarkApplication.deleteStudents(jdbcTemplate);
+        BenchmarkApplication.deleteFaculties(jdbcTemplate);
+        context.close();
+    }
+
+    @Benchmark
+    public StudentStats snapshotStats() {
+        return studentService.getStudentStats();
+    }
+
+    // Только средний возраст прежним способом — нижняя граница для подхода через сущности
+    @Benchmark
+    public double entityStreamAverageAge() {
+        return studentRepository.findAll().stream()
+                .mapToInt(Student::getAge)
+                .average()
+                .orElse(0.0);
+    }
+
+    // Те же показатели, что у /students/stats, потоками над сущностями
+    @Benchmark
+    public StudentStats entityStreamStats() {
+        List<Student> all = studentRepository.findAll();
+        if (all.isEmpty()) {
+            return new StudentStats(0, null, null, 0.0, null, Map.of(), 1, new TreeMap<>(), List.of());
+        }
+        int[] ages = all.stream().mapToInt(Student::getAge).sorted().toArray();
+        IntSummaryStatistics summary = Arrays.stream(ages).summaryStatistics();
+        Map<String, Integer> percentiles = new LinkedHashMap<>();
+        for (int p : new int[]{50, 90, 95, 99}) {
+            percentiles.put("p" + p, ages[(int) ((ages.length * (long) p + 99) / 100) - 1]);
+        }
+        TreeMap<Integer, Long> histogram = all.stream()
+                .collect(Collectors.groupingBy(Student::getAge, TreeMap::new, Collectors.counting()));
+
+        Map<Long, List<Student>> byFaculty = all.stream()
+                .collect(Collectors.groupingBy(student -> student.getFaculty() != null ? student.getFaculty().getId() : -1L));
+        List<StudentStats.FacultyAgeStats> facultyStats = new ArrayList<>();
+        byFaculty.forEach((facultyId, group) -> {
+            int[] groupAges = group.stream().mapToInt(Student::getAge).sorted().toArray();
+            facultyStats.add(new StudentStats.FacultyAgeStats(facultyId == -1L ? null : facultyId, groupAges.length,
+                    groupAges[0], groupAges[groupAges.length - 1], Arrays.stream(groupAges).average().orElse(0.0),
+                    median(groupAges)));
+        });
+        facultyStats.sort(Comparator.comparing(StudentStats.FacultyAgeStats::facultyId,
+                Comparator.nullsLast(Comparator.naturalOrder())));
+        return new StudentStats(summary.getCount(), summary.getMin(), summary.getMax(), summary.getAverage(),
+                median(ages), percentiles, 1, histogram, facultyStats);
+    }
+
+    private static double median(int[] sorted) {
+        return (sorted[(sorted.length - 1) / 2] + (double) sorted[sorted.length / 2]) / 2;
+    }
+}
@@ -0,0 +1,39 @@
+#!/usr/bin/env bash
+# Сравнение пропускной способности и p99 при 5000 одновременных соединений:
+# платформенные потоки Tomcat против виртуальных (профиль virtual, нужна Java 21+).
+# Запуск из корня проекта: JAVA_HOME=/path/to/jdk-21 src/load-test-threads.sh [connections] [duration-seconds]
+# Приложение поднимается на порту 8090 с базой из application.properties; результаты — target/load-<режим>.json
+set -euo pipefail
+
+CONNECTIONS=${1:-5000}
+DURATION=${2:-30}
+PORT=8090
+JAVA=${JAVA_HOME:+$JAVA_HOME/bin/}java
+
+# Каждое соединение — файловый дескриптор и у клиента, и у сервера
+ulimit -n $((CONNECTIONS * 2 + 1024)) || echo "Warning: could not raise open files limit" >&2
+
+mvn -B -q package -DskipTests
+JAR=$(ls target/school-*.jar | grep -v original | head -n 1)
+
+for MODE in platform virtual; do
+  PROFILE_ARGS=()
+  if [ "$MODE" = virtual ]; then
+    PROFILE_ARGS=(--spring.profiles.active=virtual)
+  fi
+  "$JAVA" -jar "$JAR" --server.port=$PORT --tracing.enabled=false "${PROFILE_ARGS[@]}" > "target/load-$MODE-app.log" 2>&1 &
+  APP_PID=$!
+  trap 'kill $APP_PID 2>/dev/null || true' EXIT
+  until curl -sf "http://localhost:$PORT/actuator/health" > /dev/null; do
+    sleep 1
+  done
+
+  mvn -B -q -P benchmark test-compile exec:exec@load-test \
+    -Dload.args="url=http://localhost:$PORT connections=$CONNECTIONS duration=$DURATION label=$MODE"
+
+  kill $APP_PID
+  wait $APP_PID 2>/dev/null || true
+done
+
+echo
+cat target/load-platform.json target/load-virtual.json
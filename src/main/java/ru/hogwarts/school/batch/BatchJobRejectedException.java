@@ -0,0 +1,9 @@
+package ru.hogwarts.school.batch;
+
+// Задание не принято: одновременно выполняется максимальное число заданий (batch.max-active-jobs)
+public class BatchJobRejectedException extends RuntimeException {
+
+    public BatchJobRejectedException(int maxActiveJobs) {
+        super("Too many active batch jobs, limit is " + maxActiveJobs);
+    }
+}
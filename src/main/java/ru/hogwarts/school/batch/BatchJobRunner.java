@@ -0,0 +1,193 @@
+package ru.hogwarts.school.batch;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ru.hogwarts.school.dto.BatchJobStatus;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+// Фоновые задания над таблицей, разбитой на диапазоны id: части выполняются на ограниченном пуле потоков.
+// Части задает вызывающий код — обычно по фактическим строкам, чтобы пропуски в id не давали пустых частей.
+// У задания в работе не больше threads частей — следующая часть ставится в очередь, только когда завершилась
+// предыдущая, поэтому очередь пула не растет, а задания делят потоки по очереди.
+// Число одновременно выполняемых заданий ограничено; сверх лимита задание отклоняется (BatchJobRejectedException)
+@Component
+public class BatchJobRunner {
+
+    private static final Logger logger = LoggerFactory.getLogger(BatchJobRunner.class);
+
+    private final ThreadPoolExecutor executor;
+    private final int threads;
+    private final int maxActiveJobs;
+    private final int maxRetainedJobs;
+
+    private final AtomicLong jobIds = new AtomicLong();
+    private final AtomicInteger activeJobs = new AtomicInteger();
+    // Задания по id: выполняющиеся и последние maxRetainedJobs завершенных
+    private final ConcurrentSkipListMap<Long, Job> jobs = new ConcurrentSkipListMap<>();
+
+    public BatchJobRunner(@Value("${batch.threads:4}") int threads,
+                          @Value("${batch.max-active-jobs:8}") int maxActiveJobs,
+                          @Value("${batch.max-retained-jobs:100}") int maxRetainedJobs) {
+        this.threads = threads;
+        this.maxActiveJobs = maxActiveJobs;
+        this.maxRetainedJobs = maxRetainedJobs;
+        AtomicInteger threadNumber = new AtomicInteger();
+        // Очередь вмещает все части, которые могут быть в работе одновременно, поэтому задачи не отклоняются
+        this.executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(threads * maxActiveJobs),
+                task -> {
+                    Thread thread = new Thread(task, "batch-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+
+    // Запускает задание над частями chunks (в порядке id) и сразу возвращает его состояние.
+    // Пустой список — обрабатывать нечего (таблица пуста), задание сразу завершено
+    public BatchJobStatus submit(String name, List<IdRange> chunks, ChunkProcessor processor) {
+        if (chunks.isEmpty()) {
+            return register(new Job(jobIds.incrementAndGet(), name, chunks, processor)).status();
+        }
+        if (activeJobs.incrementAndGet() > maxActiveJobs) {
+            activeJobs.decrementAndGet();
+            throw new BatchJobRejectedException(maxActiveJobs);
+        }
+        Job job = register(new Job(jobIds.incrementAndGet(), name, List.copyOf(chunks), processor));
+        logger.debug("Batch job {} '{}' started: ids {}..{}, {} chunks", job.id, name,
+                chunks.get(0).from(), chunks.get(chunks.size() - 1).to(), chunks.size());
+        for (int i = 0; i < Math.min(threads, job.totalChunks); i++) {
+            executor.execute(job::runNextChunk);
+        }
+        return job.status();
+    }
+
+    public Optional<BatchJobStatus> find(long id) {
+        return Optional.ofNullable(jobs.get(id)).map(Job::status);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private Job register(Job job) {
+        jobs.put(job.id, job);
+        evictFinished();
+        return job;
+    }
+
+    private void evictFinished() {
+        int excess = jobs.size() - maxRetainedJobs;
+        for (Map.Entry<Long, Job> entry : jobs.entrySet()) {
+            if (excess <= 0) {
+                return;
+            }
+            if (entry.getValue().finishedAt != null && jobs.remove(entry.getKey(), entry.getValue())) {
+                excess--;
+            }
+        }
+    }
+
+    // Выполняющееся задание: части выдаются по порядку счетчиком nextChunk, результаты пишутся в ячейку части
+    private final class Job {
+
+        private final long id;
+        private final String name;
+        private final List<IdRange> chunks;
+        private final int totalChunks;
+        private final ChunkProcessor processor;
+        private final Instant startedAt = Instant.now();
+
+        private final AtomicInteger nextChunk = new AtomicInteger();
+        private final AtomicInteger completedChunks = new AtomicInteger();
+        private final AtomicInteger failedChunks = new AtomicInteger();
+        private final AtomicLong processedItems = new AtomicLong();
+        private final AtomicReferenceArray<BatchJobStatus.ChunkTiming> timings;
+        private volatile Instant finishedAt;
+
+        private Job(long id, String name, List<IdRange> chunks, ChunkProcessor processor) {
+            this.id = id;
+            this.name = name;
+            this.chunks = chunks;
+            this.totalChunks = chunks.size();
+            this.processor = processor;
+            this.timings = new AtomicReferenceArray<>(totalChunks);
+            if (totalChunks == 0) {
+                finishedAt = startedAt;
+            }
+        }
+
+        // Обрабатывает одну часть и ставит в очередь следующую, пока части не закончатся
+        private void runNextChunk() {
+            int chunk = nextChunk.getAndIncrement();
+            if (chunk >= totalChunks) {
+                return;
+            }
+            IdRange range = chunks.get(chunk);
+            long start = System.nanoTime();
+            int items = 0;
+            String error = null;
+            try {
+                items = processor.process(range);
+                processedItems.addAndGet(items);
+            } catch (Exception e) {
+                error = e.getClass().getSimpleName() + ": " + e.getMessage();
+                logger.warn("Batch job {} '{}' chunk {}..{} failed", id, name, range.from(), range.to(), e);
+            } catch (Error e) {
+                // Ошибка пробрасывается в пул, но часть все равно учитывается — иначе задание осталось бы RUNNING
+                // и навсегда заняло место в лимите активных заданий
+                error = e.getClass().getSimpleName() + ": " + e.getMessage();
+                throw e;
+            } finally {
+                if (error != null) {
+                    failedChunks.incrementAndGet();
+                }
+                timings.set(chunk, new BatchJobStatus.ChunkTiming(range.from(), range.to(), items,
+                        TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), error));
+                completeChunk();
+            }
+        }
+
+        // Учитывает завершенную часть: завершает задание после последней или ставит в очередь следующую
+        private void completeChunk() {
+            if (completedChunks.incrementAndGet() == totalChunks) {
+                finishedAt = Instant.now();
+                activeJobs.decrementAndGet();
+                logger.debug("Batch job {} '{}' finished: {} items, {} failed chunks", id, name, processedItems.get(), failedChunks.get());
+            } else if (nextChunk.get() < totalChunks) {
+                executor.execute(this::runNextChunk);
+            }
+        }
+
+        private BatchJobStatus status() {
+            List<BatchJobStatus.ChunkTiming> done = new ArrayList<>();
+            for (int i = 0; i < timings.length(); i++) {
+                BatchJobStatus.ChunkTiming timing = timings.get(i);
+                if (timing != null) {
+                    done.add(timing);
+                }
+            }
+            Instant finished = finishedAt;
+            BatchJobStatus.State state = finished == null ? BatchJobStatus.State.RUNNING
+                    : failedChunks.get() > 0 ? BatchJobStatus.State.FAILED : BatchJobStatus.State.COMPLETED;
+            int completed = completedChunks.get();
+            return new BatchJobStatus(id, name, state, totalChunks, completed, failedChunks.get(), processedItems.get(),
+                    totalChunks == 0 ? 1.0 : (double) completed / totalChunks, startedAt, finished, done);
+        }
+    }
+}
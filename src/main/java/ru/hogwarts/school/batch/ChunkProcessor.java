@@ -0,0 +1,8 @@
+package ru.hogwarts.school.batch;
+
+// Обработка одного диапазона id в задании; возвращает количество обработанных записей
+@FunctionalInterface
+public interface ChunkProcessor {
+
+    int process(IdRange range) throws Exception;
+}
@@ -0,0 +1,11 @@
+package ru.hogwarts.school.batch;
+
+// Диапазон идентификаторов, обе границы включительно
+public record IdRange(long from, long to) {
+
+    public IdRange {
+        if (from > to) {
+            throw new IllegalArgumentException("Empty id range: " + from + ".." + to);
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package ru.hogwarts.school.config;
+
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.context.annotation.Configuration;
+
+// Кэши приложения (Caffeine). Имена, размер и время жизни задаются свойствами spring.cache.*,
+// статистика попаданий/промахов доступна в /actuator/metrics/cache.gets
+@Configuration
+@EnableCaching
+public class CacheConfig {
+
+    public static final String FACULTIES = "faculties";
+    public static final String FACULTY_LIST = "facultyList";
+    public static final String FACULTIES_BY_COLOR = "facultiesByColor";
+}
@@ -0,0 +1,36 @@
+package ru.hogwarts.school.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.hibernate.cfg.AvailableSettings;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+import ru.hogwarts.school.metrics.DbStatementCounter;
+import ru.hogwarts.school.metrics.DbStatementMetricsInterceptor;
+
+// Метрики Micrometer в формате Prometheus (/actuator/prometheus): время и ошибки методов сервисов
+// (ServiceMetricsAspect) и количество SQL-запросов на метод сервиса и на эндпоинт
+@Configuration
+public class MetricsConfig implements WebMvcConfigurer {
+
+    private final ObjectProvider<MeterRegistry> meterRegistry;
+
+    public MetricsConfig(ObjectProvider<MeterRegistry> meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    // Счетчик запросов подключается, только если inspector не задан свойством (например, в тестах на число запросов)
+    @Bean
+    public HibernatePropertiesCustomizer dbStatementCounterCustomizer() {
+        return properties -> properties.putIfAbsent(AvailableSettings.STATEMENT_INSPECTOR, new DbStatementCounter());
+    }
+
+    // В тестах MockMvc реестра метрик нет — тогда interceptor не регистрируем
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        meterRegistry.ifAvailable(meters -> registry.addInterceptor(new DbStatementMetricsInterceptor(meters)));
+    }
+}
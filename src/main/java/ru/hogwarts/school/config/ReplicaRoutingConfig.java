@@ -0,0 +1,83 @@
+package ru.hogwarts.school.config;
+
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.micrometer.MicrometerMetricsTrackerFactory;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.resource.jdbc.spi.PhysicalConnectionHandlingMode;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import ru.hogwarts.school.datasource.ReplicaRoutingDataSource;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+
+// Чтение с реплик: включается списком replicas.urls (профиль replica). Основной пул строится из spring.datasource.*,
+// приложение работает через LazyConnectionDataSourceProxy над ReplicaRoutingDataSource.
+// Liquibase и все, что идет вне read-only транзакций, попадает на основной сервер
+@Configuration
+@ConditionalOnProperty("replicas.urls")
+public class ReplicaRoutingConfig {
+
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource primaryDataSource(DataSourceProperties properties) {
+        HikariDataSource dataSource = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        dataSource.setPoolName("primary");
+        return dataSource;
+    }
+
+    @Bean
+    public ReplicaRoutingDataSource replicaRoutingDataSource(HikariDataSource primaryDataSource,
+                                                             @Value("${replicas.urls}") List<String> urls,
+                                                             @Value("${replicas.username:${spring.datasource.username}}") String username,
+                                                             @Value("${replicas.password:${spring.datasource.password}}") String password,
+                                                             @Value("${replicas.pool-size:10}") int poolSize,
+                                                             @Value("${replicas.connection-timeout-ms:1000}") long connectionTimeoutMs,
+                                                             @Value("${replicas.max-lag-ms:5000}") long maxLagMs,
+                                                             ObjectProvider<MeterRegistry> meterRegistry) {
+        List<HikariDataSource> pools = new ArrayList<>();
+        for (String url : urls) {
+            HikariConfig config = new HikariConfig();
+            config.setPoolName("replica-" + (pools.size() + 1));
+            config.setJdbcUrl(url.trim());
+            config.setUsername(username);
+            config.setPassword(password);
+            config.setMaximumPoolSize(poolSize);
+            // Недоступная реплика не должна надолго задерживать чтение — после таймаута оно уйдет на другой сервер
+            config.setConnectionTimeout(connectionTimeoutMs);
+            // Приложение стартует и без реплик: пул подключится, когда реплика станет доступна
+            config.setInitializationFailTimeout(-1);
+            config.setReadOnly(true);
+            meterRegistry.ifAvailable(registry -> config.setMetricsTrackerFactory(new MicrometerMetricsTrackerFactory(registry)));
+            pools.add(new HikariDataSource(config));
+        }
+        ReplicaRoutingDataSource routing = new ReplicaRoutingDataSource(primaryDataSource, pools, maxLagMs);
+        meterRegistry.ifAvailable(routing::bindMetrics);
+        return routing;
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource(ReplicaRoutingDataSource replicaRoutingDataSource) {
+        return new LazyConnectionDataSourceProxy(replicaRoutingDataSource);
+    }
+
+    // Hibernate по умолчанию держит соединение до закрытия сессии, а с open-in-view сессия живет весь запрос:
+    // соединение реплики, взятое для чтения, досталось бы и следующей пишущей транзакции. Отпускаем его после каждой транзакции
+    @Bean
+    public HibernatePropertiesCustomizer releaseConnectionAfterTransactionCustomizer() {
+        return properties -> properties.put(AvailableSettings.CONNECTION_HANDLING,
+                PhysicalConnectionHandlingMode.DELAYED_ACQUISITION_AND_RELEASE_AFTER_TRANSACTION);
+    }
+}
@@ -1,78 +1,170 @@
 package ru.hogwarts.school.controller;
 
-import org.springframework.core.io.FileSystemResource;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.ServletWebRequest;
 import org.springframework.web.multipart.MultipartFile;
+import ru.hogwarts.school.dto.AvatarInfo;
 import ru.hogwarts.school.model.Avatar;
 
 import ru.hogwarts.school.service.AvatarService;
+import ru.hogwarts.school.service.AvatarThumbnailService;
+import ru.hogwarts.school.storage.AvatarTooLargeException;
 
+import java.io.File;
 import java.io.IOException;
+import java.time.Duration;
 import java.util.Optional;
 
 @RestController
 @RequestMapping("/avatar")
 public class AvatarController {
 
+    // Атрибуты запроса, через которые Tomcat отдает файл системным вызовом sendfile
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
     private final AvatarService avatarService;
+    private final CacheControl cacheControl;
 
-    public AvatarController (AvatarService avatarService) {
+    public AvatarController (AvatarService avatarService, @Value("${avatars.cache-max-age:1h}") Duration cacheMaxAge) {
         this.avatarService = avatarService;
+        this.cacheControl = CacheControl.maxAge(cacheMaxAge).cachePublic();
     }
 
-    //Эндпоинт для загрузки картинки и в БД и на локальный диск
+    //Эндпоинт для загрузки картинки в хранилище аватарок
     @PostMapping(value = "/upload", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
     public ResponseEntity<Avatar> uploadAvatar(@RequestParam("file") MultipartFile file, @RequestParam("studentId") Long studentId) {
         try {
             Avatar savedAvatar = avatarService.saveAvatar(file, studentId);
+            if (savedAvatar == null) {
+                return ResponseEntity.notFound().build();
+            }
             return ResponseEntity.status(HttpStatus.CREATED).body(savedAvatar);
+        } catch (AvatarTooLargeException e) {
+            return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE).body(null);
         } catch (IOException e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(null);
         }
     }
 
-    //Эндопоинт для получения картинки из БД
+    //Эндопоинт для получения картинки по ID аватара
     @GetMapping("/{id}")
-    public ResponseEntity<byte[]> getAvatarFromDatabase(@PathVariable Long id) {
+    public ResponseEntity<Resource> getAvatarFromDatabase(@PathVariable Long id,
+                                                          @RequestParam(required = false) Integer size,
+                                                          ServletWebRequest request) throws IOException {
         Optional<Avatar> avatar = avatarService.getAvatarById(id);
         if (avatar.isPresent()) {
-            return ResponseEntity.ok()
-                    .header("Content-Type", avatar.get().getMediaType())
-                    .body(avatar.get().getData());
+            return toContentResponse(avatar.get(), size, request);
         }
         return ResponseEntity.notFound().build();
     }
 
-    //Эндпоинт для получения картинки из файловой системы
+    //Эндпоинт для получения картинки по ID студента
     @GetMapping("/file/{studentId}")
-    public ResponseEntity<FileSystemResource> getAvatarFromFileSystem(@PathVariable Long studentId) {
-        FileSystemResource resource = avatarService.getAvatarFromFileSystem(studentId);
-        if (resource != null) {
-            return ResponseEntity.ok()
-                    .header("Content-Type", "image/jpeg")
-                    .body(resource);
+    public ResponseEntity<Resource> getAvatarFromFileSystem(@PathVariable Long studentId,
+                                                            @RequestParam(required = false) Integer size,
+                                                            ServletWebRequest request) throws IOException {
+        Optional<Avatar> avatar = avatarService.getAvatarByStudentId(studentId);
+        if (avatar.isPresent()) {
+            return toContentResponse(avatar.get(), size, request);
         }
         return ResponseEntity.notFound().build();
     }
 
     // Эндпоинт для получения списка аватарок постранично
     @GetMapping
-    public ResponseEntity<Page<Avatar>> getAvatars(
+    public ResponseEntity<Page<AvatarInfo>> getAvatars(
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "10") int size) {
 
         // Создаем объект Pageable с учетом параметров страницы и размера
         Pageable pageable = PageRequest.of(page, size);
 
-        // Получаем пагинированный список аватаров
-        Page<Avatar> avatars = avatarService.getAvatarsPage(pageable);
+        // Получаем пагинированный список метаданных аватаров (без содержимого)
+        Page<AvatarInfo> avatars = avatarService.getAvatarsPage(pageable);
 
         return ResponseEntity.ok(avatars);
     }
+
+    // Формирование ответа с содержимым аватара из хранилища.
+    // ?size= — миниатюра наименьшего поддерживаемого размера не меньше запрошенного; пока она не готова,
+    // отдается оригинал без долгого кэширования, чтобы клиент получил миниатюру при следующем запросе
+    private ResponseEntity<Resource> toContentResponse(Avatar avatar, Integer size, ServletWebRequest request) throws IOException {
+        long lastModified = avatar.getUploadedAt() != null ? avatar.getUploadedAt().toEpochMilli() : -1;
+        CacheControl originalCacheControl = cacheControl;
+
+        if (size != null) {
+            Optional<Integer> thumbnailSize = avatarService.resolveThumbnailSize(size);
+            if (thumbnailSize.isPresent()) {
+                Optional<Resource> thumbnail = avatarService.getAvatarThumbnail(avatar, thumbnailSize.get());
+                if (thumbnail.isPresent()) {
+                    String eTag = "\"" + avatar.getContentHash() + "-" + thumbnailSize.get() + "\"";
+                    if (request.checkNotModified(eTag, lastModified)) {
+                        return null;
+                    }
+                    return toResponse(thumbnail.get(), eTag, lastModified,
+                            AvatarThumbnailService.THUMBNAIL_MEDIA_TYPE, cacheControl, request);
+                }
+                originalCacheControl = CacheControl.noCache();
+            }
+        }
+
+        // ETag — хэш содержимого, поэтому If-None-Match / If-Modified-Since проверяются до чтения хранилища
+        String eTag = "\"" + avatar.getContentHash() + "\"";
+        if (request.checkNotModified(eTag, lastModified)) {
+            // Статус 304 и заголовки уже выставлены
+            return null;
+        }
+
+        Optional<Resource> content = avatarService.getAvatarContent(avatar);
+        if (content.isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+        return toResponse(content.get(), eTag, lastModified, avatar.getMediaType(), originalCacheControl, request);
+    }
+
+    // Заголовок Range обрабатывает Spring MVC (206 Partial Content) для тела типа Resource
+    private ResponseEntity<Resource> toResponse(Resource resource, String eTag, long lastModified, String mediaType,
+                                                CacheControl cacheControl, ServletWebRequest request) throws IOException {
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .eTag(eTag)
+                .cacheControl(cacheControl)
+                .header(HttpHeaders.ACCEPT_RANGES, "bytes")
+                .contentType(MediaType.parseMediaType(mediaType));
+        if (lastModified > 0) {
+            response.lastModified(lastModified);
+        }
+
+        if (canSendfile(request.getRequest(), resource)) {
+            // Полный ответ из файла: тело отдает Tomcat напрямую из файла в сокет, минуя JVM
+            File file = resource.getFile();
+            HttpServletRequest servletRequest = request.getRequest();
+            servletRequest.setAttribute(SENDFILE_FILENAME, file.getAbsolutePath());
+            servletRequest.setAttribute(SENDFILE_START, 0L);
+            servletRequest.setAttribute(SENDFILE_END, file.length());
+            return response.contentLength(file.length()).build();
+        }
+        return response.body(resource);
+    }
+
+    // sendfile используем только для полного (без Range) GET файла, если коннектор его поддерживает
+    private boolean canSendfile(HttpServletRequest request, Resource resource) {
+        return Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))
+                && "GET".equals(request.getMethod())
+                && request.getHeader(HttpHeaders.RANGE) == null
+                && resource.isFile();
+    }
 }
@@ -1,11 +1,14 @@
 package ru.hogwarts.school.controller;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
+import ru.hogwarts.school.dto.CursorPage;
+import ru.hogwarts.school.dto.FacultyAssignmentRequest;
 import ru.hogwarts.school.model.Faculty;
 import ru.hogwarts.school.model.Student;
 import ru.hogwarts.school.service.FacultyService;
@@ -44,6 +47,14 @@ public class FacultyController {
         return facultyService.getAllFaculties();
     }
 
+    // Эндпоинт для получения факультетов постранично по курсору: /faculty?after=<id>&limit=N
+    @GetMapping(params = "limit")
+    public CursorPage<Faculty> getFacultiesPage(
+            @RequestParam(defaultValue = "0") long after,
+            @RequestParam int limit) {
+        return facultyService.getFacultiesAfter(after, limit);
+    }
+
     // Эндпоинт для обновления информации о факультете
     @PutMapping("/{id}")
     public Faculty updateFaculty(
@@ -54,6 +65,21 @@ public class FacultyController {
         return null;  // Возвращаем null, Spring автоматически вернёт 404 если факультет не найден
     }
 
+    // Эндпоинт для перевода группы студентов на факультет: {"studentIds": [...]} или {"minAge": .., "maxAge": ..}.
+    // Возвращает количество переведенных студентов
+    @PutMapping("/{facultyId}/students")
+    public ResponseEntity<Integer> assignStudents(
+            @PathVariable Long facultyId, @RequestBody FacultyAssignmentRequest request) {
+        if (!request.isValid()) {
+            return ResponseEntity.badRequest().build();
+        }
+        Integer updated = facultyService.assignStudents(facultyId, request);
+        if (updated == null) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(updated);
+    }
+
     // Эндпоинт для удаления факультета по ID
     @DeleteMapping("/{id}")
     public void deleteFaculty(@PathVariable Long id) {
@@ -66,10 +92,14 @@ public class FacultyController {
         return facultyService.getFacultiesByColor(color);
     }
 
-    // Эндпоинт для поиска факультета по имени или цвету, игнорируя регистр
+    // Эндпоинт для поиска факультета по подстроке в имени или цвете, игнорируя регистр.
+    // Результаты упорядочены по похожести на запрос и разбиты на страницы
     @GetMapping("/search")
-    public List<Faculty> searchFaculties(@RequestParam String searchTerm) {
-        return facultyService.searchFacultiesByNameOrColor(searchTerm);
+    public List<Faculty> searchFaculties(
+            @RequestParam String searchTerm,
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "50") int size) {
+        return facultyService.searchFacultiesByNameOrColor(searchTerm, page, size);
     }
 
     // Эндпоинт для получения студентов факультета по ID факультета
@@ -78,11 +108,29 @@ public class FacultyController {
         return facultyService.getFacultyStudents(id);
     }
 
+    // Эндпоинт для получения студентов факультета постранично по курсору
+    @GetMapping(value = "/{id}/students", params = "limit")
+    public CursorPage<Student> getFacultyStudentsPage(
+            @PathVariable Long id,
+            @RequestParam(defaultValue = "0") long after,
+            @RequestParam int limit) {
+        return facultyService.getFacultyStudentsAfter(id, after, limit);
+    }
+
     // Эндпоинт для получения самого длинного названия факультета
     @GetMapping("/longest-name")
     public String getLongestFacultyName() {
         return facultyService.getLongestFacultyName();
     }
 
+    // Эндпоинт для получения факультета с наибольшим количеством студентов
+    @GetMapping("/most-students")
+    public ResponseEntity<Faculty> getFacultyWithMostStudents() {
+        Faculty faculty = facultyService.getFacultyWithMostStudents();
+        if (faculty == null) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(faculty);
+    }
 
 }
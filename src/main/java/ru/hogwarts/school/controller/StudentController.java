@@ -1,23 +1,45 @@
 package ru.hogwarts.school.controller;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import ru.hogwarts.school.batch.BatchJobRejectedException;
+import ru.hogwarts.school.dto.BatchJobStatus;
+import ru.hogwarts.school.dto.BulkImportResult;
+import ru.hogwarts.school.dto.CursorPage;
+import ru.hogwarts.school.dto.StudentCount;
+import ru.hogwarts.school.dto.StudentStats;
 import ru.hogwarts.school.model.Faculty;
+import ru.hogwarts.school.service.StudentExportService;
+import ru.hogwarts.school.service.StudentImportService;
 import ru.hogwarts.school.service.StudentService;
 import ru.hogwarts.school.model.Student;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
 import java.util.List;
+import java.util.Locale;
 
 @RestController
 @RequestMapping("/students")
 public class StudentController {
 
     private final StudentService studentService;
+    private final StudentExportService studentExportService;
+    private final StudentImportService studentImportService;
 
     @Autowired
-    public StudentController(StudentService studentService) {
+    public StudentController(StudentService studentService, StudentExportService studentExportService,
+                             StudentImportService studentImportService) {
         this.studentService = studentService;
+        this.studentExportService = studentExportService;
+        this.studentImportService = studentImportService;
     }
 
     // Эндпоинт для создания нового студента
@@ -26,6 +48,18 @@ public class StudentController {
         return studentService.createStudent(student.getName(), student.getAge());
     }
 
+    // Эндпоинт для массовой загрузки студентов из JSON-массива (тело читается потоково)
+    @PostMapping(value = "/bulk", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public BulkImportResult importStudentsJson(InputStream body) throws IOException {
+        return studentImportService.importJson(body);
+    }
+
+    // Эндпоинт для массовой загрузки студентов из CSV: name,age[,facultyId]
+    @PostMapping(value = "/bulk", consumes = "text/csv")
+    public BulkImportResult importStudentsCsv(InputStream body) throws IOException {
+        return studentImportService.importCsv(body);
+    }
+
     // Эндпоинт для получения студента по ID
     @GetMapping("/{id}")
     public Student getStudent(@PathVariable Long id) {
@@ -38,6 +72,23 @@ public class StudentController {
         return studentService.getAllStudents();
     }
 
+    // Эндпоинт для получения студентов постранично по курсору: /students?after=<id>&limit=N
+    @GetMapping(params = "limit")
+    public CursorPage<Student> getStudentsPage(
+            @RequestParam(defaultValue = "0") long after,
+            @RequestParam int limit) {
+        return studentService.getStudentsAfter(after, limit);
+    }
+
+    // Эндпоинт для потоковой выгрузки всех студентов в формате NDJSON
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> exportStudents() {
+        StreamingResponseBody body = studentExportService::exportStudents;
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(body);
+    }
+
     // Эндпоинт для обновления информации о студенте
     @PutMapping("/{id}")
     public Student updateStudent(@PathVariable Long id, @RequestBody Student updatedStudent) {
@@ -53,10 +104,13 @@ public class StudentController {
         studentService.deleteStudent(id);
     }
 
-    // Эндпоинт для фильтрации студентов по возрасту
+    // Эндпоинт для фильтрации студентов по возрасту постранично (номер и размер страницы приводятся к допустимым)
     @GetMapping("/age/{age}")
-    public List<Student> getStudentsByAge(@PathVariable int age) {
-        return studentService.getStudentsByAge(age);
+    public List<Student> getStudentsByAge(
+            @PathVariable int age,
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "50") int size) {
+        return studentService.getStudentsByAge(age, PageRequest.of(Math.max(page, 0), CursorPage.normalizeLimit(size)));
     }
 
     // Эндпоинт для фильтрации студентов по возрасту
@@ -65,6 +119,16 @@ public class StudentController {
         return studentService.getStudentsByAgeRange(min, max);
     }
 
+    // Эндпоинт для фильтрации студентов по диапазону возраста постранично по курсору
+    @GetMapping(value = "/age/range", params = "limit")
+    public CursorPage<Student> getStudentsByAgeRangePage(
+            @RequestParam int min,
+            @RequestParam int max,
+            @RequestParam(defaultValue = "0") long after,
+            @RequestParam int limit) {
+        return studentService.getStudentsByAgeRangeAfter(min, max, after, limit);
+    }
+
     //Эндпоинт для привязки студента к факультету
     @PutMapping("/{studentId}/faculty/{facultyId}")
     public ResponseEntity<Student> assignFacultyToStudent(
@@ -93,6 +157,19 @@ public class StudentController {
         return ResponseEntity.ok(count);
     }
 
+    // Эндпоинт для получения количества студентов выбранным способом: /students/count?mode=exact|cached|estimate.
+    // Ответ содержит время актуальности значения, чтобы клиент мог выбрать между точностью и скоростью
+    @GetMapping(value = "/count", params = "mode")
+    public ResponseEntity<StudentCount> getStudentCount(@RequestParam String mode) {
+        StudentCount.Mode countMode;
+        try {
+            countMode = StudentCount.Mode.valueOf(mode.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+        return ResponseEntity.ok(studentService.getStudentCount(countMode));
+    }
+
     // Эндпоинт для получения 5 последних студентов
     @GetMapping("/last-five")
     public ResponseEntity<List<Student>> getLastFiveStudents() {
@@ -107,6 +184,14 @@ public class StudentController {
         return ResponseEntity.ok(names);
     }
 
+    // Эндпоинт для автодополнения имен студентов по префиксу без учета регистра: /students/names?prefix=Ал&limit=10
+    @GetMapping("/names")
+    public List<String> getNamesByPrefix(
+            @RequestParam(defaultValue = "") String prefix,
+            @RequestParam(defaultValue = "10") int limit) {
+        return studentService.getNamesByPrefix(prefix, limit);
+    }
+
     // Эндпоинт для получения среднего возраста студентов
     @GetMapping("/average-age")
     public ResponseEntity<Double> getAverageAge() {
@@ -114,75 +199,41 @@ public class StudentController {
         return ResponseEntity.ok(averageAge);
     }
 
-    // Эндпоинт для вывода в консоль имен всех студентов в параллельном режиме
-    @GetMapping("/print-parallel")
-    public String printStudentsInParallel() {
-        List<Student> students = studentService.getAllStudents();
-
-        if (students.size() < 6) {
-            return "Not enough students (minimum 6 required)";
-        }
-
-        // Первые два имени — основной поток
-        System.out.println("Main Thread:");
-        System.out.println(students.get(0).getName());
-        System.out.println(students.get(1).getName());
-
-        // Поток 1 — 3-й и 4-й студенты
-        Thread thread1 = new Thread(() -> {
-            System.out.println("Thread 1:");
-            System.out.println(students.get(2).getName());
-            System.out.println(students.get(3).getName());
-        });
-
-        // Поток 2 — 5-й и 6-й студенты
-        Thread thread2 = new Thread(() -> {
-            System.out.println("Thread 2:");
-            System.out.println(students.get(4).getName());
-            System.out.println(students.get(5).getName());
-        });
-
-        thread1.start();
-        thread2.start();
-
-        return "Printed 6 student names in parallel (check console)";
+    // Эндпоинт для получения статистики возрастов студентов: гистограмма, минимум, максимум, среднее, медиана,
+    // процентили и те же показатели по факультетам
+    @GetMapping("/stats")
+    public ResponseEntity<StudentStats> getStudentStats() {
+        return ResponseEntity.ok(studentService.getStudentStats());
     }
 
-    // Синхронизированный метод для вывода имени студента
-    private synchronized void printStudentName(String name) {
-        System.out.println(name);
+    // Эндпоинт для вывода в консоль имен всех студентов в параллельном режиме: запускает фоновое задание
+    // по диапазонам id и возвращает его состояние (202), прогресс — по ссылке из Location
+    @GetMapping("/print-parallel")
+    public ResponseEntity<BatchJobStatus> printStudentsInParallel() {
+        return startPrintJob(false);
     }
 
+    // Эндпоинт для вывода имен в синхронизированном режиме: имена одной части выводятся подряд
     @GetMapping("/print-synchronized")
-    public String printStudentsSynchronized() {
-        List<Student> students = studentService.getAllStudents();
+    public ResponseEntity<BatchJobStatus> printStudentsSynchronized() {
+        return startPrintJob(true);
+    }
 
-        if (students.size() < 6) {
-            return "Not enough students (minimum 6 required)";
-        }
+    // Эндпоинт для получения состояния задания вывода имен: прогресс, время по частям, завершение
+    @GetMapping("/print-jobs/{jobId}")
+    public ResponseEntity<BatchJobStatus> getPrintJob(@PathVariable long jobId) {
+        return studentService.getBatchJob(jobId)
+                .map(ResponseEntity::ok)
+                .orElseGet(() -> ResponseEntity.notFound().build());
+    }
 
-        // Первые два имени — основной поток
-        System.out.println("Main Thread:");
-        printStudentName(students.get(0).getName());
-        printStudentName(students.get(1).getName());
-
-        // Поток 1 — 3-й и 4-й студенты
-        Thread thread1 = new Thread(() -> {
-            System.out.println("Thread 1:");
-            printStudentName(students.get(2).getName());
-            printStudentName(students.get(3).getName());
-        });
-
-        // Поток 2 — 5-й и 6-й студенты
-        Thread thread2 = new Thread(() -> {
-            System.out.println("Thread 2:");
-            printStudentName(students.get(4).getName());
-            printStudentName(students.get(5).getName());
-        });
-
-        thread1.start();
-        thread2.start();
-
-        return "Printed 6 student names in synchronized mode (check console)";
+    private ResponseEntity<BatchJobStatus> startPrintJob(boolean ordered) {
+        BatchJobStatus job;
+        try {
+            job = studentService.printStudentNames(ordered);
+        } catch (BatchJobRejectedException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).header(HttpHeaders.RETRY_AFTER, "1").build();
+        }
+        return ResponseEntity.accepted().location(URI.create("/students/print-jobs/" + job.id())).body(job);
     }
 }
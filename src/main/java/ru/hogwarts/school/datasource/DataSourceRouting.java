@@ -0,0 +1,36 @@
+package ru.hogwarts.school.datasource;
+
+import java.util.function.Supplier;
+
+// Принудительное чтение с основного сервера: read-only транзакции внутри onPrimary не уходят на реплики.
+// Нужно там, где читаются только что закоммиченные данные (обработчики событий после коммита) — реплика может отставать
+public final class DataSourceRouting {
+
+    private static final ThreadLocal<Boolean> PRIMARY = new ThreadLocal<>();
+
+    private DataSourceRouting() {
+    }
+
+    public static <T> T onPrimary(Supplier<T> action) {
+        Boolean previous = PRIMARY.get();
+        PRIMARY.set(Boolean.TRUE);
+        try {
+            return action.get();
+        } finally {
+            if (previous == null) {
+                PRIMARY.remove();
+            }
+        }
+    }
+
+    public static void onPrimary(Runnable action) {
+        onPrimary(() -> {
+            action.run();
+            return null;
+        });
+    }
+
+    static boolean isPrimaryForced() {
+        return PRIMARY.get() != null;
+    }
+}
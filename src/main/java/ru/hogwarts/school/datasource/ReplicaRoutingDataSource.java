@@ -0,0 +1,153 @@
+package ru.hogwarts.school.datasource;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+// Маршрутизация соединений: для read-only транзакций — по кругу одна из здоровых реплик, для остального — основной сервер.
+// Решение принимается при получении физического соединения, поэтому источник оборачивается в LazyConnectionDataSourceProxy:
+// к первому запросу транзакция уже помечена read-only (см. ReplicaRoutingConfig).
+// Реплика исключается, если проверка показала отставание больше maxLagMs или она недоступна, а также сразу после ошибки
+// получения соединения; возвращается после успешной проверки. Без здоровых реплик чтение идет на основной сервер
+public class ReplicaRoutingDataSource extends AbstractDataSource implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReplicaRoutingDataSource.class);
+
+    // Отставание в мс: 0 — все полученные WAL применены (в том числе при простое основного сервера) или это не реплика,
+    // NULL — неизвестно (репликация не шла с момента запуска)
+    static final String LAG_QUERY = "SELECT CASE WHEN NOT pg_is_in_recovery() " +
+            "OR pg_last_wal_receive_lsn() = pg_last_wal_replay_lsn() THEN 0 " +
+            "ELSE CAST(EXTRACT(EPOCH FROM now() - pg_last_xact_replay_timestamp()) * 1000 AS bigint) END";
+
+    private final DataSource primary;
+    private final List<Replica> replicas;
+    private final long maxLagMs;
+    private final AtomicInteger next = new AtomicInteger();
+    // Read-only соединения, выданные основным сервером, потому что здоровых реплик не было
+    private final LongAdder fallbacks = new LongAdder();
+
+    public ReplicaRoutingDataSource(DataSource primary, List<HikariDataSource> replicaPools, long maxLagMs) {
+        this.primary = primary;
+        this.replicas = replicaPools.stream().map(Replica::new).toList();
+        this.maxLagMs = maxLagMs;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        if (TransactionSynchronizationManager.isCurrentTransactionReadOnly() && !DataSourceRouting.isPrimaryForced()
+                && !replicas.isEmpty()) {
+            int start = Math.floorMod(next.getAndIncrement(), replicas.size());
+            for (int i = 0; i < replicas.size(); i++) {
+                Replica replica = replicas.get((start + i) % replicas.size());
+                if (!replica.healthy) {
+                    continue;
+                }
+                try {
+                    return replica.pool.getConnection();
+                } catch (SQLException e) {
+                    replica.healthy = false;
+                    logger.warn("Replica {} is unavailable, reads go elsewhere until the next check", replica.getName(), e);
+                }
+            }
+            fallbacks.increment();
+        }
+        return primary.getConnection();
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        throw new SQLFeatureNotSupportedException("Replica routing uses the credentials of the configured pools");
+    }
+
+    // Проверка отставания реплик: здоровая — отвечает и отстает не больше maxLagMs
+    @Scheduled(fixedDelayString = "${replicas.check-interval-ms:1000}")
+    public void checkReplicas() {
+        for (Replica replica : replicas) {
+            Long lag = null;
+            try {
+                lag = replica.jdbcTemplate.queryForObject(LAG_QUERY, Long.class);
+            } catch (DataAccessException e) {
+                logger.debug("Replica {} lag check failed", replica.getName(), e);
+            }
+            boolean healthy = lag != null && lag <= maxLagMs;
+            if (healthy != replica.healthy) {
+                if (healthy) {
+                    logger.info("Replica {} is back in rotation, lag = {} ms", replica.getName(), lag);
+                } else {
+                    logger.warn("Replica {} is out of rotation, lag = {} ms (max {} ms)", replica.getName(), lag, maxLagMs);
+                }
+            }
+            replica.lagMs = lag != null ? lag : -1;
+            replica.healthy = healthy;
+        }
+    }
+
+    public List<Replica> getReplicas() {
+        return replicas;
+    }
+
+    public long getFallbacks() {
+        return fallbacks.sum();
+    }
+
+    // Отставание и состояние каждой реплики и число переходов на основной сервер
+    public void bindMetrics(MeterRegistry registry) {
+        for (Replica replica : replicas) {
+            Gauge.builder("datasource.replica.lag", replica, Replica::getLagMs)
+                    .tag("replica", replica.getName())
+                    .baseUnit("milliseconds")
+                    .register(registry);
+            Gauge.builder("datasource.replica.healthy", replica, r -> r.isHealthy() ? 1 : 0)
+                    .tag("replica", replica.getName())
+                    .register(registry);
+        }
+        FunctionCounter.builder("datasource.replica.fallbacks", fallbacks, LongAdder::sum).register(registry);
+    }
+
+    @Override
+    public void close() {
+        replicas.forEach(replica -> replica.pool.close());
+    }
+
+    // Пул реплики и результат последней проверки. До первой проверки реплика не используется
+    public static final class Replica {
+        private final HikariDataSource pool;
+        private final JdbcTemplate jdbcTemplate;
+        private volatile boolean healthy;
+        private volatile long lagMs = -1;
+
+        private Replica(HikariDataSource pool) {
+            this.pool = pool;
+            this.jdbcTemplate = new JdbcTemplate(pool);
+        }
+
+        public String getName() {
+            return pool.getPoolName();
+        }
+
+        public boolean isHealthy() {
+            return healthy;
+        }
+
+        // Отставание по последней проверке, -1 — неизвестно
+        public long getLagMs() {
+            return lagMs;
+        }
+    }
+}
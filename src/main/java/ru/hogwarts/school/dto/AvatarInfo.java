@@ -0,0 +1,10 @@
+package ru.hogwarts.school.dto;
+
+// Метаданные аватара для списков: без содержимого и без загрузки студента
+public record AvatarInfo(Long id, Long studentId, long fileSize, String mediaType, String url) {
+
+    // Конструктор для JPQL-проекции; url строится по id аватара
+    public AvatarInfo(Long id, Long studentId, long fileSize, String mediaType) {
+        this(id, studentId, fileSize, mediaType, "/avatar/" + id);
+    }
+}
@@ -0,0 +1,20 @@
+package ru.hogwarts.school.dto;
+
+import java.time.Instant;
+import java.util.List;
+
+// Состояние фонового задания по диапазонам id: прогресс по частям, число обработанных записей
+// и время выполнения каждой завершенной части (в порядке id)
+public record BatchJobStatus(long id, String name, State state, int totalChunks, int completedChunks, int failedChunks,
+                             long processedItems, double progress, Instant startedAt, Instant finishedAt,
+                             List<ChunkTiming> chunks) {
+
+    // FAILED — задание завершено, но хотя бы одна часть упала с ошибкой
+    public enum State {
+        RUNNING, COMPLETED, FAILED
+    }
+
+    // Завершенная часть задания: диапазон id, обработано записей, длительность и ошибка (null — успешно)
+    public record ChunkTiming(long fromId, long toId, int items, long durationMs, String error) {
+    }
+}
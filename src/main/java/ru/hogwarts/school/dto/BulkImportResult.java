@@ -0,0 +1,14 @@
+package ru.hogwarts.school.dto;
+
+import java.util.List;
+
+// Результат массовой загрузки студентов: сколько строк прочитано и сохранено, и ошибки по строкам.
+// Список ошибок ограничен, чтобы ответ не рос вместе с входными данными
+public record BulkImportResult(long received, long imported, long failed, List<RowError> errors, boolean errorsTruncated) {
+
+    public static final int MAX_ERRORS = 100;
+
+    // Ошибка в строке входных данных (нумерация с 1)
+    public record RowError(long row, String message) {
+    }
+}
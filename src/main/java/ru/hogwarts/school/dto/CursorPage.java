@@ -0,0 +1,24 @@
+package ru.hogwarts.school.dto;
+
+import java.util.List;
+import java.util.function.Function;
+
+// Страница keyset-пагинации: элементы и курсор (id последнего элемента) для запроса следующей страницы
+public record CursorPage<T>(List<T> items, Long nextCursor) {
+
+    public static final int MAX_LIMIT = 1000;
+
+    // Ограничиваем размер страницы допустимыми пределами
+    public static int normalizeLimit(int limit) {
+        return Math.max(1, Math.min(limit, MAX_LIMIT));
+    }
+
+    // Собираем страницу из выборки размером limit + 1: лишний элемент означает, что есть следующая страница
+    public static <T> CursorPage<T> of(List<T> fetched, int limit, Function<T, Long> idExtractor) {
+        if (fetched.size() <= limit) {
+            return new CursorPage<>(fetched, null);
+        }
+        List<T> items = fetched.subList(0, limit);
+        return new CursorPage<>(List.copyOf(items), idExtractor.apply(items.get(limit - 1)));
+    }
+}
@@ -0,0 +1,25 @@
+package ru.hogwarts.school.dto;
+
+import java.util.List;
+
+// Запрос на перевод студентов на факультет: либо список id студентов, либо диапазон возраста
+public record FacultyAssignmentRequest(List<Long> studentIds, Integer minAge, Integer maxAge) {
+
+    public static final int MAX_STUDENT_IDS = 10_000;
+
+    public boolean hasStudentIds() {
+        return studentIds != null && !studentIds.isEmpty();
+    }
+
+    public boolean hasAgeRange() {
+        return minAge != null && maxAge != null;
+    }
+
+    // Должен быть задан ровно один способ выбора студентов
+    public boolean isValid() {
+        if (hasStudentIds() == hasAgeRange()) {
+            return false;
+        }
+        return hasStudentIds() ? studentIds.size() <= MAX_STUDENT_IDS : minAge <= maxAge;
+    }
+}
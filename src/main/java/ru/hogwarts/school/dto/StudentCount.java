@@ -0,0 +1,18 @@
+package ru.hogwarts.school.dto;
+
+import java.time.Instant;
+
+// Количество студентов с метаданными свежести: каким способом получено значение,
+// на какой момент оно актуально (null — неизвестно) и сколько миллисекунд прошло с этого момента
+public record StudentCount(long count, Mode mode, Instant asOf, Long stalenessMs) {
+
+    // Способ подсчета: точный COUNT, поддерживаемый в памяти счетчик или оценка по статистике планировщика
+    public enum Mode {
+        EXACT, CACHED, ESTIMATE
+    }
+
+    public static StudentCount of(long count, Mode mode, Instant asOf) {
+        Long staleness = asOf != null ? Math.max(0, Instant.now().toEpochMilli() - asOf.toEpochMilli()) : null;
+        return new StudentCount(count, mode, asOf, staleness);
+    }
+}
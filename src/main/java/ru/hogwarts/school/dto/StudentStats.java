@@ -0,0 +1,19 @@
+package ru.hogwarts.school.dto;
+
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+
+// Статистика возрастов студентов: общие показатели, гистограмма и разбивка по факультетам.
+// Гистограмма — количество студентов по корзинам возраста (ключ — нижняя граница корзины). Ширина корзины 1,
+// если разброс возрастов укладывается в лимит гистограммы, иначе медиана и процентили — с точностью до корзины.
+// Для пустой таблицы count = 0, а возрасты и медиана — null
+public record StudentStats(long count, Integer minAge, Integer maxAge, double meanAge, Double medianAge,
+                           Map<String, Integer> percentiles, int bucketWidth, SortedMap<Integer, Long> histogram,
+                           List<FacultyAgeStats> faculties) {
+
+    // Показатели по факультету; facultyId = null — студенты без факультета
+    public record FacultyAgeStats(Long facultyId, long count, int minAge, int maxAge, double meanAge,
+                                  double medianAge) {
+    }
+}
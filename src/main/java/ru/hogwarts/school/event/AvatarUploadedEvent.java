@@ -0,0 +1,5 @@
+package ru.hogwarts.school.event;
+
+// Событие загрузки нового содержимого аватарки
+public record AvatarUploadedEvent(Long avatarId, String contentHash, String mediaType) {
+}
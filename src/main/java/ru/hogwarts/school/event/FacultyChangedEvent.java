@@ -0,0 +1,5 @@
+package ru.hogwarts.school.event;
+
+// Событие создания, изменения или удаления факультета
+public record FacultyChangedEvent(Long facultyId) {
+}
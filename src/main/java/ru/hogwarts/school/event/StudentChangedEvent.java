@@ -0,0 +1,29 @@
+package ru.hogwarts.school.event;
+
+import ru.hogwarts.school.model.Student;
+
+// Событие изменения студента: before == null — студент создан, after == null — удален.
+// transactionId — id транзакции БД, в которой сделано изменение (см. TransactionSnapshot)
+public record StudentChangedEvent(Long studentId, StudentState before, StudentState after, long transactionId) {
+
+    // Снимок полей студента на момент изменения
+    public record StudentState(String name, int age, Long facultyId) {
+
+        public static StudentState of(Student student) {
+            Long facultyId = student.getFaculty() != null ? student.getFaculty().getId() : null;
+            return new StudentState(student.getName(), student.getAge(), facultyId);
+        }
+    }
+
+    public static StudentChangedEvent created(Student student, long transactionId) {
+        return new StudentChangedEvent(student.getId(), null, StudentState.of(student), transactionId);
+    }
+
+    public static StudentChangedEvent updated(Long studentId, StudentState before, Student after, long transactionId) {
+        return new StudentChangedEvent(studentId, before, StudentState.of(after), transactionId);
+    }
+
+    public static StudentChangedEvent deleted(Student student, long transactionId) {
+        return new StudentChangedEvent(student.getId(), StudentState.of(student), null, transactionId);
+    }
+}
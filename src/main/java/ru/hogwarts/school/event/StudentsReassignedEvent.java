@@ -0,0 +1,6 @@
+package ru.hogwarts.school.event;
+
+// Событие массового перевода студентов на факультет одним UPDATE (без загрузки самих студентов).
+// transactionId — id транзакции БД, в которой сделан перевод
+public record StudentsReassignedEvent(Long facultyId, int updated, long transactionId) {
+}
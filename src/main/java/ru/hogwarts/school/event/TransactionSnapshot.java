@@ -0,0 +1,25 @@
+package ru.hogwarts.school.event;
+
+import java.util.Arrays;
+
+// Снимок PostgreSQL (pg_current_snapshot): по нему видно, попали ли изменения транзакции в прочитанные данные.
+// Транзакция видна, если завершилась до снимка: id меньше xmin или меньше xmax и не среди выполнявшихся
+public record TransactionSnapshot(long xmin, long xmax, long[] inProgress) {
+
+    // Разбор текстового вида "xmin:xmax:xip1,xip2,..."
+    public static TransactionSnapshot parse(String text) {
+        String[] parts = text.split(":", -1);
+        if (parts.length != 3) {
+            throw new IllegalArgumentException("Malformed snapshot: " + text);
+        }
+        long[] inProgress = parts[2].isEmpty()
+                ? new long[0]
+                : Arrays.stream(parts[2].split(",")).mapToLong(Long::parseLong).sorted().toArray();
+        return new TransactionSnapshot(Long.parseLong(parts[0]), Long.parseLong(parts[1]), inProgress);
+    }
+
+    // Изменения транзакции transactionId уже отражены в данных, прочитанных с этим снимком
+    public boolean includes(long transactionId) {
+        return transactionId < xmin || (transactionId < xmax && Arrays.binarySearch(inProgress, transactionId) < 0);
+    }
+}
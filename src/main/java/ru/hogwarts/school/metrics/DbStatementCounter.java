@@ -0,0 +1,21 @@
+package ru.hogwarts.school.metrics;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+// Счетчик SQL-запросов, подготовленных Hibernate в текущем потоке. Значение только растет:
+// вызывающий запоминает его до работы и вычитает после, поэтому вложенные замеры не мешают друг другу
+public class DbStatementCounter implements StatementInspector {
+
+    private static final ThreadLocal<long[]> COUNT = ThreadLocal.withInitial(() -> new long[1]);
+
+    // Сколько запросов выполнено в текущем потоке с его старта
+    public static long current() {
+        return COUNT.get()[0];
+    }
+
+    @Override
+    public String inspect(String sql) {
+        COUNT.get()[0]++;
+        return sql;
+    }
+}
@@ -0,0 +1,42 @@
+package ru.hogwarts.school.metrics;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.HandlerMapping;
+
+// Количество SQL-запросов на HTTP-запрос (http.server.db.statements) с тегами method и uri (шаблон пути, как
+// в http.server.requests). Учитывает и ленивую загрузку при сериализации ответа, которая идет до afterCompletion
+public class DbStatementMetricsInterceptor implements HandlerInterceptor {
+
+    static final String DB_STATEMENTS = "http.server.db.statements";
+
+    private static final String START_ATTRIBUTE = DbStatementMetricsInterceptor.class.getName() + ".start";
+
+    private final MeterRegistry registry;
+
+    public DbStatementMetricsInterceptor(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        request.setAttribute(START_ATTRIBUTE, DbStatementCounter.current());
+        return true;
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        if (!(request.getAttribute(START_ATTRIBUTE) instanceof Long start)) {
+            return;
+        }
+        Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        DistributionSummary.builder(DB_STATEMENTS)
+                .description("SQL statements per HTTP request")
+                .tags("method", request.getMethod(), "uri", pattern != null ? pattern.toString() : "UNKNOWN")
+                .register(registry)
+                .record(DbStatementCounter.current() - start);
+    }
+}
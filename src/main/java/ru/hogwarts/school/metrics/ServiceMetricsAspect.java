@@ -0,0 +1,92 @@
+package ru.hogwarts.school.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.springframework.stereotype.Component;
+
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+// Метрики публичных методов сервисов: время выполнения (service.method), ошибки (service.errors)
+// и количество SQL-запросов за вызов (service.db.statements) с тегами class и method.
+// Гистограммы для перцентилей (p50/p99 через histogram_quantile) включаются свойствами management.metrics.distribution.*.
+// Вызовы внутри того же сервиса прокси не видит; при вызове одного сервиса из другого запросы учитываются у обоих
+@Aspect
+@Component
+public class ServiceMetricsAspect {
+
+    static final String TIMER = "service.method";
+    static final String ERRORS = "service.errors";
+    static final String DB_STATEMENTS = "service.db.statements";
+
+    private final MeterRegistry registry;
+    private final Map<Method, MethodMeters> meters = new ConcurrentHashMap<>();
+
+    public ServiceMetricsAspect(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    @Around("within(@org.springframework.stereotype.Service ru.hogwarts.school.service..*) && execution(public * *(..))")
+    public Object measure(ProceedingJoinPoint joinPoint) throws Throwable {
+        MethodSignature signature = (MethodSignature) joinPoint.getSignature();
+        MethodMeters methodMeters = meters.computeIfAbsent(signature.getMethod(),
+                method -> new MethodMeters(signature.getDeclaringType().getSimpleName(), method.getName()));
+
+        long statementsBefore = DbStatementCounter.current();
+        long start = System.nanoTime();
+        try {
+            Object result = joinPoint.proceed();
+            methodMeters.success.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            return result;
+        } catch (Throwable e) {
+            methodMeters.failed(e, System.nanoTime() - start);
+            throw e;
+        } finally {
+            methodMeters.statements.record(DbStatementCounter.current() - statementsBefore);
+        }
+    }
+
+    // Метры одного метода создаются один раз; для ошибок — по типу исключения при первом появлении
+    private final class MethodMeters {
+
+        private final String className;
+        private final String methodName;
+        private final Timer success;
+        private final DistributionSummary statements;
+
+        private MethodMeters(String className, String methodName) {
+            this.className = className;
+            this.methodName = methodName;
+            this.success = timer("none");
+            this.statements = DistributionSummary.builder(DB_STATEMENTS)
+                    .description("SQL statements per service method call")
+                    .tags("class", className, "method", methodName)
+                    .register(registry);
+        }
+
+        private Timer timer(String exception) {
+            return Timer.builder(TIMER)
+                    .description("Service method execution time")
+                    .tags("class", className, "method", methodName, "exception", exception)
+                    .register(registry);
+        }
+
+        private void failed(Throwable e, long nanos) {
+            String exception = e.getClass().getSimpleName();
+            timer(exception).record(nanos, TimeUnit.NANOSECONDS);
+            Counter.builder(ERRORS)
+                    .description("Service method calls completed with an exception")
+                    .tags("class", className, "method", methodName, "exception", exception)
+                    .register(registry)
+                    .increment();
+        }
+    }
+}
@@ -2,7 +2,7 @@ package ru.hogwarts.school.model;
 
 import jakarta.persistence.*;
 
-import java.util.Arrays;
+import java.time.Instant;
 import java.util.Objects;
 
 @Entity
@@ -10,12 +10,14 @@ public class Avatar {
     @Id
     @GeneratedValue
     private Long id;
-    private String filePath;
     private long fileSize;
     private String mediaType;
 
-    @Lob
-    private byte[] data;
+    // SHA-256 содержимого, по которому оно лежит в хранилище аватарок
+    private String contentHash;
+
+    // Время загрузки содержимого (для Last-Modified / If-Modified-Since)
+    private Instant uploadedAt;
 
     @OneToOne
     @JoinColumn(name = "student_id")
@@ -24,9 +26,9 @@ public class Avatar {
     // Конструктор без параметров (для JPA)
     public Avatar() {}
 
-    public Avatar (Long id, String filePath, long fileSize, String mediaType, Student student) {
+    public Avatar (Long id, String contentHash, long fileSize, String mediaType, Student student) {
         this.id = id;
-        this.filePath = filePath;
+        this.contentHash = contentHash;
         this.fileSize = fileSize;
         this.mediaType = mediaType;
         this.student = student;
@@ -36,10 +38,6 @@ public class Avatar {
         return id;
     }
 
-    public String getFilePath() {
-        return filePath;
-    }
-
     public long getFileSize() {
         return fileSize;
     }
@@ -48,16 +46,16 @@ public class Avatar {
         return mediaType;
     }
 
-    public byte[] getData() {
-        return data;
+    public String getContentHash() {
+        return contentHash;
     }
 
-    public Student getStudent() {
-        return student;
+    public Instant getUploadedAt() {
+        return uploadedAt;
     }
 
-    public void setFilePath(String filePath) {
-        this.filePath = filePath;
+    public Student getStudent() {
+        return student;
     }
 
     public void setFileSize(long fileSize) {
@@ -68,8 +66,12 @@ public class Avatar {
         this.mediaType = mediaType;
     }
 
-    public void setData(byte[] data) {
-        this.data = data;
+    public void setContentHash(String contentHash) {
+        this.contentHash = contentHash;
+    }
+
+    public void setUploadedAt(Instant uploadedAt) {
+        this.uploadedAt = uploadedAt;
     }
 
     public void setStudent(Student student) {
@@ -80,10 +82,10 @@ public class Avatar {
     public String toString() {
         return "Avatar{" +
                 "id=" + id +
-                ", filePath='" + filePath + '\'' +
                 ", fileSize=" + fileSize +
                 ", mediaType='" + mediaType + '\'' +
-                ", data=" + Arrays.toString(data) +
+                ", contentHash='" + contentHash + '\'' +
+                ", uploadedAt=" + uploadedAt +
                 ", student=" + student +
                 '}';
     }
@@ -93,11 +95,11 @@ public class Avatar {
         if (this == o) return true;
         if (o == null || getClass() != o.getClass()) return false;
         Avatar avatar = (Avatar) o;
-        return fileSize == avatar.fileSize && Objects.equals(id, avatar.id) && Objects.equals(filePath, avatar.filePath) && Objects.equals(mediaType, avatar.mediaType) && Objects.deepEquals(data, avatar.data) && Objects.equals(student, avatar.student);
+        return fileSize == avatar.fileSize && Objects.equals(id, avatar.id) && Objects.equals(mediaType, avatar.mediaType) && Objects.equals(contentHash, avatar.contentHash) && Objects.equals(uploadedAt, avatar.uploadedAt) && Objects.equals(student, avatar.student);
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(id, filePath, fileSize, mediaType, Arrays.hashCode(data), student);
+        return Objects.hash(id, fileSize, mediaType, contentHash, uploadedAt, student);
     }
 }
@@ -0,0 +1,35 @@
+package ru.hogwarts.school.model;
+
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+
+// Содержимое аватарки в БД, адресуемое по SHA-256 (одинаковые картинки хранятся один раз)
+@Entity
+public class AvatarContent {
+    @Id
+    private String hash;
+
+    private byte[] data;
+
+    private long size;
+
+    // Конструктор без параметров (для JPA)
+    public AvatarContent() {}
+
+    public String getHash() {
+        return hash;
+    }
+
+    public byte[] getData() {
+        return data;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    @Override
+    public String toString() {
+        return "AvatarContent{hash='" + hash + "', size=" + size + "}";
+    }
+}
@@ -13,8 +13,9 @@ public class Student {
     private String name;
     private int age;
 
-    //@ManyToOne (fetch = FetchType.LAZY)
-    @ManyToOne(fetch = FetchType.EAGER)
+    // Факультет загружается лениво; запросы, которые возвращают студентов вместе с факультетом,
+    // подгружают его тем же SQL через @EntityGraph в репозитории
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "faculty_id")
     private Faculty faculty;
 
@@ -0,0 +1,46 @@
+package ru.hogwarts.school.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import ru.hogwarts.school.model.AvatarContent;
+
+import java.time.Instant;
+import java.util.List;
+
+@Repository
+public interface AvatarContentRepository extends JpaRepository<AvatarContent, String> {
+
+    // Хэши исходного содержимого (без вариантов <хэш>_<вариант>), которое последний раз сохраняли раньше storedBefore
+    @Query(value = "SELECT hash FROM avatar_content WHERE stored_at < :storedBefore AND strpos(hash, '_') = 0",
+            nativeQuery = true)
+    List<String> findHashesStoredBefore(@Param("storedBefore") Instant storedBefore);
+
+    // Удаление содержимого, если его не сохраняли повторно начиная с storedBefore
+    @Modifying
+    @Query(value = "DELETE FROM avatar_content WHERE hash = :hash AND stored_at < :storedBefore", nativeQuery = true)
+    int deleteIfStoredBefore(@Param("hash") String hash, @Param("storedBefore") Instant storedBefore);
+
+    // Удаление всех вариантов содержимого
+    @Modifying
+    @Query(value = "DELETE FROM avatar_content WHERE hash LIKE CONCAT(:hash, '\\_%')", nativeQuery = true)
+    int deleteVariants(@Param("hash") String hash);
+
+    // Удаление содержимого, перенесенного из avatar_content в другое хранилище (без чтения самого содержимого)
+    @Transactional
+    @Modifying
+    @Query(value = "DELETE FROM avatar_content WHERE hash = :hash", nativeQuery = true)
+    int deleteMoved(@Param("hash") String hash);
+
+    // Пути старых файлов аватарок, оставшихся после переноса содержимого в avatar_content
+    @Query(value = "SELECT path FROM avatar_legacy_file", nativeQuery = true)
+    List<String> findLegacyFiles();
+
+    @Transactional
+    @Modifying
+    @Query(value = "DELETE FROM avatar_legacy_file WHERE path = :path", nativeQuery = true)
+    int deleteLegacyFile(@Param("path") String path);
+}
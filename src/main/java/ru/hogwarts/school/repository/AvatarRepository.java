@@ -2,10 +2,15 @@ package ru.hogwarts.school.repository;
 
 import org.springframework.data.domain.Page;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import ru.hogwarts.school.dto.AvatarInfo;
 import ru.hogwarts.school.model.Avatar;
 
 import org.springframework.data.domain.Pageable;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
@@ -17,5 +22,13 @@ public interface AvatarRepository extends JpaRepository<Avatar, Long> {
     //Метод для получения аватара по ID
     Optional<Avatar> findById(Long id);
 
+    //Метод для получения страницы метаданных аватаров (id студента берется из внешнего ключа, без join)
+    @Query(value = "SELECT new ru.hogwarts.school.dto.AvatarInfo(a.id, a.student.id, a.fileSize, a.mediaType) FROM Avatar a",
+            countQuery = "SELECT COUNT(a) FROM Avatar a")
+    Page<AvatarInfo> findAllInfo(Pageable pageable);
+
+    //Метод для получения хэшей из списка, на которые еще ссылается хотя бы одна аватарка (для очистки хранилища)
+    @Query("SELECT DISTINCT a.contentHash FROM Avatar a WHERE a.contentHash IN :hashes")
+    List<String> findContentHashesIn(@Param("hashes") Collection<String> hashes);
 
 }
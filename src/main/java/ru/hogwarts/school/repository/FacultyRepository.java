@@ -1,5 +1,6 @@
 package ru.hogwarts.school.repository;
 
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
@@ -12,12 +13,29 @@ import java.util.List;
 @Repository
 public interface FacultyRepository extends JpaRepository<Faculty, Long> {
 
-    // Метод для поиска факультетов по имени или цвету с игнорированием регистра
-    List<Faculty> findByNameIgnoreCaseContainingOrColorIgnoreCaseContaining(String name, String color);
+    // Поиск факультетов по подстроке в имени или цвете (GIN-индексы pg_trgm по lower(name) и lower(color)),
+    // сначала наиболее похожие на запрос
+    @Query(value = "SELECT f.* FROM faculty f " +
+            "WHERE lower(f.name) LIKE :pattern ESCAPE '\\' OR lower(f.color) LIKE :pattern ESCAPE '\\' " +
+            "ORDER BY GREATEST(similarity(lower(f.name), :term), similarity(lower(f.color), :term)) DESC, f.id " +
+            "LIMIT :limit OFFSET :offset", nativeQuery = true)
+    List<Faculty> searchByNameOrColor(@Param("term") String term, @Param("pattern") String pattern,
+                                      @Param("limit") int limit, @Param("offset") long offset);
+
+    // Поиск факультетов по цвету в нижнем регистре (индекс idx_faculty_color_lower)
+    @Query("SELECT f FROM Faculty f WHERE lower(f.color) = :color")
+    List<Faculty> findByLowerColor(@Param("color") String color);
+
+    // Факультеты с самыми длинными названиями
+    @Query("SELECT f FROM Faculty f WHERE f.name IS NOT NULL ORDER BY length(f.name) DESC, f.id")
+    List<Faculty> findLongestNames(Limit limit);
+
+    // Keyset-пагинация: факультеты с id больше курсора
+    List<Faculty> findByIdGreaterThanOrderByIdAsc(long afterId, Limit limit);
 
     // Метод для поиска студентов по ID факультета
     //List<Student> findStudentsById(Long id);
-    @Query("SELECT s FROM Student s WHERE s.faculty.id = :facultyId")
+    @Query("SELECT s FROM Student s JOIN FETCH s.faculty f WHERE f.id = :facultyId")
     List<Student> findStudentsById(@Param("facultyId") Long facultyId);
 
 }
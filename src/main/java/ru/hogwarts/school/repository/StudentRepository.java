@@ -1,37 +1,158 @@
 package ru.hogwarts.school.repository;
 
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import ru.hogwarts.school.model.Faculty;
 import ru.hogwarts.school.model.Student;
 
-import java.awt.print.Pageable;
+import java.time.Instant;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
 public interface StudentRepository extends JpaRepository<Student, Long> {
 
+    // Методы, результат которых отдается клиенту вместе с факультетом, загружают его одним запросом (join)
+    @Override
+    @EntityGraph(attributePaths = "faculty")
+    Optional<Student> findById(Long id);
+
+    @Override
+    @EntityGraph(attributePaths = "faculty")
+    List<Student> findAll();
+
+    //Получение страницы студентов заданного возраста (использует индекс idx_student_age)
+    @EntityGraph(attributePaths = "faculty")
+    List<Student> findByAgeOrderByIdAsc(int age, Pageable pageable);
+
     //Получение списка студентов в определенном диапазоне
+    @EntityGraph(attributePaths = "faculty")
     List<Student> findByAgeBetween(int minAge, int maxAge);
 
+    // Keyset-пагинация: студенты с id больше курсора
+    @EntityGraph(attributePaths = "faculty")
+    List<Student> findByIdGreaterThanOrderByIdAsc(long afterId, Limit limit);
+
+    // Keyset-пагинация по диапазону возраста
+    @EntityGraph(attributePaths = "faculty")
+    List<Student> findByAgeBetweenAndIdGreaterThanOrderByIdAsc(int minAge, int maxAge, long afterId, Limit limit);
+
+    // Keyset-пагинация по студентам факультета (использует индекс idx_student_faculty)
+    @EntityGraph(attributePaths = "faculty")
+    List<Student> findByFacultyIdAndIdGreaterThanOrderByIdAsc(Long facultyId, long afterId, Limit limit);
+
+    // Потоковое чтение всех студентов курсором БД (по 500 строк за обращение)
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+    @Query("SELECT s FROM Student s LEFT JOIN FETCH s.faculty ORDER BY s.id")
+    Stream<Student> streamAllByOrderByIdAsc();
+
     //Получение факультета студента по id студента
     @Query("SELECT s.faculty FROM Student s WHERE s.id = :studentId")
     Optional<Faculty> findFacultyById(@Param("studentId") Long studentId);
 
+    // Имена всех студентов (для построения префиксного индекса)
+    @Query("SELECT s.name FROM Student s")
+    List<String> findAllNames();
+
+    // Id, возраст и факультет всех студентов в порядке id (для колоночного снимка статистики возрастов)
+    @Query("SELECT s.id AS id, s.age AS age, f.id AS facultyId FROM Student s LEFT JOIN s.faculty f ORDER BY s.id")
+    List<StudentAgeRow> findAgeRows();
+
+    // Границы частей по chunkSize студентов в порядке id — для фоновых заданий по диапазонам id.
+    // Части режутся по существующим строкам, поэтому пропуски в id не дают пустых частей
+    @Query(value = "SELECT MIN(id) AS minId, MAX(id) AS maxId " +
+            "FROM (SELECT id, (row_number() OVER (ORDER BY id) - 1) / :chunkSize AS chunk FROM student) ids " +
+            "GROUP BY chunk ORDER BY chunk", nativeQuery = true)
+    List<IdBounds> findIdChunks(@Param("chunkSize") int chunkSize);
+
+    // Имена студентов из диапазона id в порядке id
+    @Query("SELECT s.name FROM Student s WHERE s.id BETWEEN :fromId AND :toId ORDER BY s.id")
+    List<String> findNamesByIdBetween(@Param("fromId") long fromId, @Param("toId") long toId);
+
     // Получение количества всех студентов
     @Query("SELECT COUNT(s) FROM Student s")
     long countAllStudents();
 
+    // Оценка количества студентов по статистике планировщика (без чтения таблицы) и время последнего ANALYZE.
+    // reltuples = -1, если таблица еще не анализировалась
+    @Query(value = "SELECT CAST(c.reltuples AS bigint) AS estimate, " +
+            "GREATEST(st.last_analyze, st.last_autoanalyze) AS analyzedAt " +
+            "FROM pg_class c LEFT JOIN pg_stat_user_tables st ON st.relid = c.oid " +
+            "WHERE c.oid = CAST('student' AS regclass)", nativeQuery = true)
+    StudentCountEstimate estimateStudentCount();
+
+    // Получение количества студентов и суммы их возрастов одним запросом
+    @Query("SELECT COUNT(s) AS total, COALESCE(SUM(s.age), 0) AS ageSum FROM Student s")
+    StudentTotals findStudentTotals();
+
+    // Количество студентов на каждом факультете
+    @Query("SELECT s.faculty.id AS facultyId, COUNT(s) AS students FROM Student s WHERE s.faculty IS NOT NULL GROUP BY s.faculty.id")
+    List<FacultyStudents> countStudentsByFaculty();
+
     // Получение среднего возраста студентов
     @Query("SELECT AVG(s.age) FROM Student s")
     double findAverageAge();
 
     // Получение последних 5 студентов (по идентификатору)
     @Query("SELECT s FROM Student s ORDER BY s.id DESC")
+    @EntityGraph(attributePaths = "faculty")
     List<Student> findTop5ByOrderByIdDesc(Pageable pageable);
 
-}
+    // Перевод студентов из списка на факультет одним UPDATE
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE Student s SET s.faculty = :faculty WHERE s.id IN :ids")
+    int assignFacultyByIds(@Param("faculty") Faculty faculty, @Param("ids") Collection<Long> ids);
+
+    // Перевод студентов заданного возраста на факультет одним UPDATE
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE Student s SET s.faculty = :faculty WHERE s.age BETWEEN :minAge AND :maxAge")
+    int assignFacultyByAgeBetween(@Param("faculty") Faculty faculty, @Param("minAge") int minAge, @Param("maxAge") int maxAge);
+
+    // Проекция для агрегатов по студентам
+    interface StudentTotals {
+        long getTotal();
+
+        long getAgeSum();
+    }
+
+    // Проекция количества студентов факультета
+    interface FacultyStudents {
+        Long getFacultyId();
+
+        long getStudents();
+    }
+
+    // Проекция строки снимка статистики возрастов
+    interface StudentAgeRow {
+        long getId();
 
+        int getAge();
+
+        Long getFacultyId();
+    }
+
+    // Проекция границ id части студентов
+    interface IdBounds {
+        Long getMinId();
+
+        Long getMaxId();
+    }
+
+    // Проекция оценки количества студентов
+    interface StudentCountEstimate {
+        long getEstimate();
+
+        Instant getAnalyzedAt();
+    }
+}
@@ -0,0 +1,13 @@
+package ru.hogwarts.school.search;
+
+import ru.hogwarts.school.model.Faculty;
+
+import java.util.List;
+
+// Поиск факультетов по подстроке в названии или цвете без учета регистра.
+// Реализация выбирается свойством faculties.search.type (trigram | ngram)
+public interface FacultySearch {
+
+    // Страница результатов: сначала наиболее похожие на запрос, при равенстве — по id
+    List<Faculty> search(String term, int page, int size);
+}
@@ -0,0 +1,251 @@
+package ru.hogwarts.school.search;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import ru.hogwarts.school.datasource.DataSourceRouting;
+import ru.hogwarts.school.event.FacultyChangedEvent;
+import ru.hogwarts.school.model.Faculty;
+import ru.hogwarts.school.repository.FacultyRepository;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// Поиск без pg_trgm (для БД без расширения): индекс триграмм в памяти.
+// Кандидаты — пересечение списков факультетов по всем триграммам запроса, затем точная проверка подстроки.
+// Индекс загружается при первом поиске, обновляется по событиям изменения факультетов
+// и периодически перестраивается из БД (исправляет расхождения от изменений в обход сервиса)
+@Component
+@ConditionalOnProperty(name = "faculties.search.type", havingValue = "ngram")
+public class NgramFacultySearch implements FacultySearch {
+
+    private static final Logger logger = LoggerFactory.getLogger(NgramFacultySearch.class);
+
+    private static final int N = 3;
+
+    private final FacultyRepository facultyRepository;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Lock loadLock = new ReentrantLock();
+
+    private final Map<Long, Entry> entries = new HashMap<>();
+    private final Map<String, Set<Long>> postings = new HashMap<>();
+    // Id факультетов, измененных во время загрузки: загрузка могла их не увидеть
+    private Set<Long> pending;
+    private volatile boolean loaded;
+
+    public NgramFacultySearch(FacultyRepository facultyRepository) {
+        this.facultyRepository = facultyRepository;
+    }
+
+    @Override
+    public List<Faculty> search(String term, int page, int size) {
+        ensureLoaded();
+        String key = term.toLowerCase(Locale.ROOT);
+        Set<String> keyGrams = grams(key);
+        List<Scored> matches = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            for (Long id : candidates(keyGrams)) {
+                Entry entry = entries.get(id);
+                if (entry.name().contains(key) || entry.color().contains(key)) {
+                    matches.add(new Scored(entry.faculty(), Math.max(
+                            similarity(keyGrams, entry.nameGrams()), similarity(keyGrams, entry.colorGrams()))));
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return matches.stream()
+                .sorted(Comparator.comparingDouble(Scored::score).reversed()
+                        .thenComparing(scored -> scored.faculty().getId()))
+                .skip((long) page * size)
+                .limit(size)
+                .map(Scored::faculty)
+                .toList();
+    }
+
+    // Обновляем индекс по факультету после коммита изменения. Во время загрузки только запоминаем факультет —
+    // он перечитывается после нее. До первой загрузки событие не нужно: загрузка прочитает изменение сама
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onFacultyChanged(FacultyChangedEvent event) {
+        lock.writeLock().lock();
+        try {
+            if (pending != null) {
+                pending.add(event.facultyId());
+                return;
+            }
+            if (!loaded) {
+                return;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        refresh(event.facultyId());
+    }
+
+    // Периодическая перестройка из БД
+    @Scheduled(fixedDelayString = "${faculties.search.rebuild-interval-ms:600000}")
+    public void rebuild() {
+        load(true);
+    }
+
+    // После загрузки поиск проходит по volatile-флагу без блокировки
+    private void ensureLoaded() {
+        if (!loaded) {
+            load(false);
+        }
+    }
+
+    // Загрузка из БД под loadLock: пока она идет, остальные потоки ждут на блокировке, не занимая потоки-носители.
+    // Читаем с основного сервера: события пришедших раньше изменений уже пропущены, реплика может их еще не получить
+    private void load(boolean force) {
+        loadLock.lock();
+        try {
+            if (loaded && !force) {
+                return;
+            }
+            setPending(new HashSet<>());
+            List<Faculty> faculties;
+            try {
+                faculties = DataSourceRouting.onPrimary(() -> facultyRepository.findAll());
+            } catch (RuntimeException e) {
+                setPending(null);
+                throw e;
+            }
+            Set<Long> changed;
+            lock.writeLock().lock();
+            try {
+                entries.clear();
+                postings.clear();
+                faculties.forEach(this::add);
+                changed = pending;
+                pending = null;
+                loaded = true;
+            } finally {
+                lock.writeLock().unlock();
+            }
+            changed.forEach(this::refresh);
+            logger.debug("Faculty n-gram index built: {} faculties, {} grams, {} changed during load",
+                    faculties.size(), postings.size(), changed.size());
+        } finally {
+            loadLock.unlock();
+        }
+    }
+
+    // Перечитывает факультет с основного сервера: изменение только что закоммичено, реплика может отставать
+    private void refresh(Long id) {
+        Faculty faculty = DataSourceRouting.onPrimary(() -> facultyRepository.findById(id)).orElse(null);
+        lock.writeLock().lock();
+        try {
+            remove(id);
+            if (faculty != null) {
+                add(faculty);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void setPending(Set<Long> ids) {
+        lock.writeLock().lock();
+        try {
+            pending = ids;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Для короткого запроса (меньше N символов) триграмм нет — проверяем все факультеты
+    private Collection<Long> candidates(Set<String> keyGrams) {
+        if (keyGrams.isEmpty()) {
+            return entries.keySet();
+        }
+        Set<Long> result = null;
+        for (String gram : keyGrams) {
+            Set<Long> ids = postings.get(gram);
+            if (ids == null) {
+                return Set.of();
+            }
+            if (result == null) {
+                result = new HashSet<>(ids);
+            } else {
+                result.retainAll(ids);
+            }
+        }
+        return result;
+    }
+
+    private void add(Faculty faculty) {
+        String name = lower(faculty.getName());
+        String color = lower(faculty.getColor());
+        Entry entry = new Entry(faculty, name, color, grams(name), grams(color));
+        entries.put(faculty.getId(), entry);
+        entry.allGrams().forEach(gram -> postings.computeIfAbsent(gram, g -> new HashSet<>()).add(faculty.getId()));
+    }
+
+    private void remove(Long id) {
+        Entry entry = entries.remove(id);
+        if (entry == null) {
+            return;
+        }
+        for (String gram : entry.allGrams()) {
+            Set<Long> ids = postings.get(gram);
+            ids.remove(id);
+            if (ids.isEmpty()) {
+                postings.remove(gram);
+            }
+        }
+    }
+
+    private static String lower(String value) {
+        return value == null ? "" : value.toLowerCase(Locale.ROOT);
+    }
+
+    private static Set<String> grams(String value) {
+        Set<String> grams = new HashSet<>();
+        for (int i = 0; i + N <= value.length(); i++) {
+            grams.add(value.substring(i, i + N));
+        }
+        return grams;
+    }
+
+    // Доля общих триграмм (коэффициент Жаккара), как similarity() в pg_trgm
+    private static double similarity(Set<String> a, Set<String> b) {
+        if (a.isEmpty() || b.isEmpty()) {
+            return 0;
+        }
+        int common = 0;
+        for (String gram : a) {
+            if (b.contains(gram)) {
+                common++;
+            }
+        }
+        return (double) common / (a.size() + b.size() - common);
+    }
+
+    private record Entry(Faculty faculty, String name, String color, Set<String> nameGrams, Set<String> colorGrams) {
+
+        Set<String> allGrams() {
+            Set<String> all = new HashSet<>(nameGrams);
+            all.addAll(colorGrams);
+            return all;
+        }
+    }
+
+    private record Scored(Faculty faculty, double score) {
+    }
+}
@@ -0,0 +1,33 @@
+package ru.hogwarts.school.search;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import ru.hogwarts.school.model.Faculty;
+import ru.hogwarts.school.repository.FacultyRepository;
+
+import java.util.List;
+import java.util.Locale;
+
+// Поиск в Postgres: LIKE '%..%' по lower(name)/lower(color) использует GIN-индексы pg_trgm,
+// ранжирование — по similarity()
+@Component
+@ConditionalOnProperty(name = "faculties.search.type", havingValue = "trigram", matchIfMissing = true)
+public class TrigramFacultySearch implements FacultySearch {
+
+    private final FacultyRepository facultyRepository;
+
+    public TrigramFacultySearch(FacultyRepository facultyRepository) {
+        this.facultyRepository = facultyRepository;
+    }
+
+    @Override
+    public List<Faculty> search(String term, int page, int size) {
+        String key = term.toLowerCase(Locale.ROOT);
+        return facultyRepository.searchByNameOrColor(key, "%" + escapeLike(key) + "%", size, (long) page * size);
+    }
+
+    // Экранируем спецсимволы LIKE, чтобы '%' и '_' в запросе искались буквально
+    private static String escapeLike(String value) {
+        return value.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+}
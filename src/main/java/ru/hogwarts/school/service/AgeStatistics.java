@@ -0,0 +1,225 @@
+package ru.hogwarts.school.service;
+
+import ru.hogwarts.school.dto.StudentStats;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+// Статистика возрастов по колонкам снимка (возраст и код факультета строки) в два параллельных прохода fork/join:
+// первый считает количество, сумму, минимум и максимум по каждому коду факультета, второй — гистограммы по кодам.
+// Части диапазона строк считаются в примитивных массивах и складываются поэлементно, без упаковки
+final class AgeStatistics {
+
+    // Процентили в ответе (ближайший ранг)
+    static final int[] PERCENTILES = {50, 90, 95, 99};
+    // Наибольшее число корзин гистограммы и ячеек гистограмм по всем факультетам в одной части
+    static final int MAX_BUCKETS = 4096;
+    static final int MAX_CELLS = 1 << 18;
+    // Меньше строк в части не делим: накладные расходы на задачу и сложение гистограмм больше выигрыша
+    static final int MIN_ROWS_PER_TASK = 8192;
+
+    private final int[] ages;
+    private final int[] faculties;
+    private final int size;
+    private final long[] facultyIds;
+    private final int codes;
+    private final int threshold;
+
+    // faculties[i] — код факультета строки (0 — без факультета, отрицательный — строка удалена),
+    // facultyIds[code] — id факультета по коду, codes — число используемых кодов
+    AgeStatistics(int[] ages, int[] faculties, int size, long[] facultyIds, int codes, int parallelism) {
+        this.ages = ages;
+        this.faculties = faculties;
+        this.size = size;
+        this.facultyIds = facultyIds;
+        this.codes = codes;
+        // Несколько частей на поток, чтобы fork/join выровнял нагрузку
+        this.threshold = Math.max(MIN_ROWS_PER_TASK, size / (Math.max(1, parallelism) * 4));
+    }
+
+    StudentStats compute(ForkJoinPool pool) {
+        Totals totals = pool.invoke(new TotalsTask(0, size));
+        long count = 0;
+        long sum = 0;
+        int min = Integer.MAX_VALUE;
+        int max = Integer.MIN_VALUE;
+        for (int code = 0; code < codes; code++) {
+            if (totals.count[code] > 0) {
+                count += totals.count[code];
+                sum += totals.sum[code];
+                min = Math.min(min, totals.min[code]);
+                max = Math.max(max, totals.max[code]);
+            }
+        }
+        if (count == 0) {
+            return new StudentStats(0, null, null, 0.0, null, Map.of(), 1, new TreeMap<>(), List.of());
+        }
+
+        long span = (long) max - min + 1;
+        int maxBuckets = Math.max(1, Math.min(MAX_BUCKETS, MAX_CELLS / codes));
+        int width = (int) ((span + maxBuckets - 1) / maxBuckets);
+        int buckets = (int) ((span + width - 1) / width);
+        long[] histograms = pool.invoke(new HistogramTask(0, size, min, width, buckets));
+
+        long[] overall = new long[buckets];
+        List<StudentStats.FacultyAgeStats> byFaculty = new ArrayList<>();
+        for (int code = 0; code < codes; code++) {
+            if (totals.count[code] == 0) {
+                continue;
+            }
+            int offset = code * buckets;
+            for (int bucket = 0; bucket < buckets; bucket++) {
+                overall[bucket] += histograms[offset + bucket];
+            }
+            long n = totals.count[code];
+            byFaculty.add(new StudentStats.FacultyAgeStats(code == 0 ? null : facultyIds[code], n,
+                    totals.min[code], totals.max[code], (double) totals.sum[code] / n,
+                    median(histograms, offset, n, min, width)));
+        }
+        byFaculty.sort(Comparator.comparing(StudentStats.FacultyAgeStats::facultyId,
+                Comparator.nullsLast(Comparator.naturalOrder())));
+
+        Map<String, Integer> percentiles = new LinkedHashMap<>();
+        for (int p : PERCENTILES) {
+            percentiles.put("p" + p, valueAtRank(overall, 0, (count * p + 99) / 100, min, width));
+        }
+        SortedMap<Integer, Long> histogram = new TreeMap<>();
+        for (int bucket = 0; bucket < buckets; bucket++) {
+            if (overall[bucket] > 0) {
+                histogram.put((int) (min + (long) bucket * width), overall[bucket]);
+            }
+        }
+        return new StudentStats(count, min, max, (double) sum / count, median(overall, 0, count, min, width),
+                percentiles, width, histogram, byFaculty);
+    }
+
+    // Медиана: среднее двух средних значений при четном количестве
+    private static double median(long[] histogram, int offset, long n, int min, int width) {
+        return (valueAtRank(histogram, offset, (n + 1) / 2, min, width)
+                + (double) valueAtRank(histogram, offset, n / 2 + 1, min, width)) / 2;
+    }
+
+    // Значение с порядковым номером rank (с 1) по накопленной гистограмме — нижняя граница его корзины
+    private static int valueAtRank(long[] histogram, int offset, long rank, int min, int width) {
+        long seen = 0;
+        int bucket = 0;
+        while (seen + histogram[offset + bucket] < rank) {
+            seen += histogram[offset + bucket];
+            bucket++;
+        }
+        return (int) (min + (long) bucket * width);
+    }
+
+    // Количество, сумма, минимум и максимум возраста по кодам факультетов
+    private static final class Totals {
+        private final long[] count;
+        private final long[] sum;
+        private final int[] min;
+        private final int[] max;
+
+        private Totals(int codes) {
+            count = new long[codes];
+            sum = new long[codes];
+            min = new int[codes];
+            max = new int[codes];
+            Arrays.fill(min, Integer.MAX_VALUE);
+            Arrays.fill(max, Integer.MIN_VALUE);
+        }
+
+        private Totals merge(Totals other) {
+            for (int code = 0; code < count.length; code++) {
+                count[code] += other.count[code];
+                sum[code] += other.sum[code];
+                min[code] = Math.min(min[code], other.min[code]);
+                max[code] = Math.max(max[code], other.max[code]);
+            }
+            return this;
+        }
+    }
+
+    private final class TotalsTask extends RecursiveTask<Totals> {
+        private final int from;
+        private final int to;
+
+        private TotalsTask(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Totals compute() {
+            if (to - from > threshold) {
+                int middle = (from + to) >>> 1;
+                TotalsTask left = new TotalsTask(from, middle);
+                left.fork();
+                Totals right = new TotalsTask(middle, to).compute();
+                return left.join().merge(right);
+            }
+            Totals totals = new Totals(codes);
+            for (int i = from; i < to; i++) {
+                int code = faculties[i];
+                if (code < 0) {
+                    continue;
+                }
+                int age = ages[i];
+                totals.count[code]++;
+                totals.sum[code] += age;
+                if (age < totals.min[code]) {
+                    totals.min[code] = age;
+                }
+                if (age > totals.max[code]) {
+                    totals.max[code] = age;
+                }
+            }
+            return totals;
+        }
+    }
+
+    // Гистограммы всех кодов в одном массиве: ячейка code * buckets + корзина
+    private final class HistogramTask extends RecursiveTask<long[]> {
+        private final int from;
+        private final int to;
+        private final int min;
+        private final int width;
+        private final int buckets;
+
+        private HistogramTask(int from, int to, int min, int width, int buckets) {
+            this.from = from;
+            this.to = to;
+            this.min = min;
+            this.width = width;
+            this.buckets = buckets;
+        }
+
+        @Override
+        protected long[] compute() {
+            if (to - from > threshold) {
+                int middle = (from + to) >>> 1;
+                HistogramTask left = new HistogramTask(from, middle, min, width, buckets);
+                left.fork();
+                long[] right = new HistogramTask(middle, to, min, width, buckets).compute();
+                long[] merged = left.join();
+                for (int cell = 0; cell < merged.length; cell++) {
+                    merged[cell] += right[cell];
+                }
+                return merged;
+            }
+            long[] histograms = new long[codes * buckets];
+            for (int i = from; i < to; i++) {
+                int code = faculties[i];
+                if (code >= 0) {
+                    histograms[code * buckets + (int) (((long) ages[i] - min) / width)]++;
+                }
+            }
+            return histograms;
+        }
+    }
+}
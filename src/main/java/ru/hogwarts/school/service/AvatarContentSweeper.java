@@ -0,0 +1,77 @@
+package ru.hogwarts.school.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import ru.hogwarts.school.datasource.DataSourceRouting;
+import ru.hogwarts.school.repository.AvatarContentRepository;
+import ru.hogwarts.school.repository.AvatarRepository;
+import ru.hogwarts.school.storage.AvatarStorage;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+// Очистка хранилища аватарок: удаляет содержимое (с миниатюрами), на которое не ссылается ни одна аватарка, —
+// замененное повторной загрузкой или оставшееся от откатившейся загрузки.
+// Удаляется только содержимое, которое не сохраняли дольше grace-ms: загрузка сначала сохраняет содержимое
+// (повторное сохранение обновляет его время), а ссылка на него появляется только после коммита.
+// Заодно удаляются старые файлы аватарок, содержимое которых миграция перенесла в avatar_content
+@Component
+public class AvatarContentSweeper {
+
+    private static final Logger logger = LoggerFactory.getLogger(AvatarContentSweeper.class);
+
+    // Сколько хэшей проверяем на ссылки одним запросом
+    private static final int BATCH_SIZE = 500;
+
+    private final AvatarStorage avatarStorage;
+    private final AvatarRepository avatarRepository;
+    private final AvatarContentRepository avatarContentRepository;
+    private final Duration grace;
+
+    public AvatarContentSweeper(AvatarStorage avatarStorage, AvatarRepository avatarRepository,
+                                AvatarContentRepository avatarContentRepository,
+                                @Value("${avatars.cleanup.grace-ms:3600000}") long graceMs) {
+        this.avatarStorage = avatarStorage;
+        this.avatarRepository = avatarRepository;
+        this.avatarContentRepository = avatarContentRepository;
+        this.grace = Duration.ofMillis(graceMs);
+    }
+
+    @Scheduled(fixedDelayString = "${avatars.cleanup.interval-ms:3600000}")
+    public void sweep() {
+        Instant storedBefore = Instant.now().minus(grace);
+        int deleted = 0;
+        try {
+            for (String path : avatarContentRepository.findLegacyFiles()) {
+                Files.deleteIfExists(Paths.get(path));
+                avatarContentRepository.deleteLegacyFile(path);
+                deleted++;
+            }
+            List<String> candidates = avatarStorage.findStoredBefore(storedBefore);
+            for (int from = 0; from < candidates.size(); from += BATCH_SIZE) {
+                List<String> batch = candidates.subList(from, Math.min(candidates.size(), from + BATCH_SIZE));
+                // Ссылки проверяем на основном сервере: реплика может еще не получить новую аватарку
+                Set<String> referenced = new HashSet<>(
+                        DataSourceRouting.onPrimary(() -> avatarRepository.findContentHashesIn(batch)));
+                for (String hash : batch) {
+                    if (!referenced.contains(hash) && avatarStorage.delete(hash, storedBefore)) {
+                        deleted++;
+                    }
+                }
+            }
+        } catch (IOException e) {
+            logger.warn("Avatar content sweep failed after {} deletions", deleted, e);
+            return;
+        }
+        logger.debug("Avatar content sweep deleted {} unreferenced entries stored before {}", deleted, storedBefore);
+    }
+}
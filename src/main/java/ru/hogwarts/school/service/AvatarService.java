@@ -3,20 +3,25 @@ package ru.hogwarts.school.service;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.beans.factory.annotation.Value;
-import org.springframework.core.io.FileSystemResource;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.core.io.Resource;
 import org.springframework.data.domain.Page;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
+import ru.hogwarts.school.dto.AvatarInfo;
+import ru.hogwarts.school.event.AvatarUploadedEvent;
 import ru.hogwarts.school.model.Avatar;
+import ru.hogwarts.school.model.Student;
 import ru.hogwarts.school.repository.AvatarRepository;
 import org.springframework.transaction.annotation.Transactional;
+import ru.hogwarts.school.repository.StudentRepository;
+import ru.hogwarts.school.storage.AvatarStorage;
+import ru.hogwarts.school.storage.StoredContent;
 
 import org.springframework.data.domain.Pageable;
 import java.io.*;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
 import java.util.Optional;
 
 
@@ -26,21 +31,24 @@ public class AvatarService{
     private static final Logger logger = LoggerFactory.getLogger(AvatarService.class);
 
     private final AvatarRepository avatarRepository;
-
-
-
-    @Value("${avatars.dir.path}")
-    private String avatarsDir;
+    private final StudentRepository studentRepository;
+    private final AvatarStorage avatarStorage;
+    private final AvatarThumbnailService thumbnailService;
+    private final ApplicationEventPublisher eventPublisher;
 
     @Autowired
-    public AvatarService(AvatarRepository avatarRepository) {
+    public AvatarService(AvatarRepository avatarRepository, StudentRepository studentRepository, AvatarStorage avatarStorage,
+                         AvatarThumbnailService thumbnailService, ApplicationEventPublisher eventPublisher) {
         this.avatarRepository = avatarRepository;
+        this.studentRepository = studentRepository;
+        this.avatarStorage = avatarStorage;
+        this.thumbnailService = thumbnailService;
+        this.eventPublisher = eventPublisher;
     }
 
     // Метод для получения аватара по ID
     @Transactional(readOnly = true)
     public Optional<Avatar> getAvatarById(Long id) {
-        logger.info("Was invoked method for get avatar by ID");
         logger.debug("Getting avatar with id = {}", id);
         Optional<Avatar> avatar = avatarRepository.findById(id);
         if (avatar.isEmpty()) {
@@ -52,7 +60,6 @@ public class AvatarService{
     // Метод для получения аватара по studentId
     @Transactional(readOnly = true)
     public Optional<Avatar> getAvatarByStudentId(Long studentId) {
-        logger.info("Was invoked method for get avatar by studentId");
         logger.debug("Getting avatar with studentId = {}", studentId);
         Optional<Avatar> avatar = avatarRepository.findByStudentId(studentId);
         if (avatar.isEmpty()) {
@@ -61,54 +68,66 @@ public class AvatarService{
         return avatar;
     }
 
-    // Метод для сохранения аватара в БД и на диск
+    // Метод для сохранения аватара: содержимое в хранилище по хэшу, в таблице avatar — только метаданные
     @Transactional
     public Avatar saveAvatar(MultipartFile file, Long studentId) throws IOException {
-        logger.info("Was invoked method for save avatar");
         logger.debug("Saving avatar for studentId = {}", studentId);
 
-        try {
-            String fileName = studentId + "_" + file.getOriginalFilename();
-            Path filePath = Paths.get(avatarsDir, fileName);
+        Student student = studentRepository.findById(studentId).orElse(null);
+        if (student == null) {
+            logger.warn("Student not found with id = {}", studentId);
+            return null;
+        }
 
-            Files.createDirectories(filePath.getParent());
-            Files.write(filePath, file.getBytes());
+        // Содержимое передается в хранилище потоком, без file.getBytes()
+        try (InputStream content = file.getInputStream()) {
+            StoredContent stored = avatarStorage.save(content);
 
-            Avatar avatar = new Avatar();
-            avatar.setFilePath(filePath.toString());
-            avatar.setFileSize(file.getSize());
+            // У студента одна аватарка: повторная загрузка заменяет метаданные существующей
+            Avatar avatar = avatarRepository.findByStudentId(studentId).orElseGet(Avatar::new);
+            avatar.setStudent(student);
+            avatar.setContentHash(stored.hash());
+            avatar.setFileSize(stored.size());
             avatar.setMediaType(file.getContentType());
-            avatar.setData(file.getBytes());
+            avatar.setUploadedAt(Instant.now().truncatedTo(ChronoUnit.SECONDS));
 
-            logger.debug("Avatar file saved to path = {}", filePath);
+            logger.debug("Avatar content stored with hash = {}", stored.hash());
 
-            return avatarRepository.save(avatar);
+            Avatar saved = avatarRepository.save(avatar);
+            eventPublisher.publishEvent(new AvatarUploadedEvent(saved.getId(), saved.getContentHash(), saved.getMediaType()));
+            return saved;
         } catch (IOException e) {
             logger.error("Failed to save avatar for studentId = {}", studentId, e);
             throw e;
         }
     }
 
-    // Метод для получения аватара из директории
-    public FileSystemResource getAvatarFromFileSystem(Long studentId) {
-        logger.info("Was invoked method for get avatar from file system");
-        String fileName = studentId + "_avatar.jpg";
-        Path path = Paths.get(avatarsDir, fileName);
-        logger.debug("Checking existence of file at path = {}", path);
-
-        if (Files.exists(path)) {
-            logger.debug("Avatar file found for studentId = {}", studentId);
-            return new FileSystemResource(path.toFile());
-        } else {
-            logger.warn("Avatar file not found for studentId = {}", studentId);
-            return null;
+    // Метод для получения содержимого аватара из хранилища
+    public Optional<Resource> getAvatarContent(Avatar avatar) throws IOException {
+        logger.debug("Loading avatar content with hash = {}", avatar.getContentHash());
+
+        Optional<Resource> content = avatarStorage.load(avatar.getContentHash());
+        if (content.isEmpty()) {
+            logger.warn("Avatar content with hash = {} is missing in storage", avatar.getContentHash());
         }
+        return content;
+    }
+
+    // Метод для получения миниатюры аватара; пустой результат, если она еще не готова
+    public Optional<Resource> getAvatarThumbnail(Avatar avatar, int size) throws IOException {
+        logger.debug("Loading thumbnail {} of avatar content with hash = {}", size, avatar.getContentHash());
+        return thumbnailService.getThumbnail(avatar.getContentHash(), size);
     }
 
-    // Метод для получения аватаров с пагинацией
-    public Page<Avatar> getAvatarsPage(Pageable pageable) {
-        logger.info("Was invoked method for get avatars page");
+    // Метод для выбора поддерживаемого размера миниатюры под запрошенный
+    public Optional<Integer> resolveThumbnailSize(int requested) {
+        return thumbnailService.resolveSize(requested);
+    }
+
+    // Метод для получения метаданных аватаров с пагинацией
+    @Transactional(readOnly = true)
+    public Page<AvatarInfo> getAvatarsPage(Pageable pageable) {
         logger.debug("Fetching avatars page with pageable = {}", pageable);
-        return avatarRepository.findAll(pageable);
+        return avatarRepository.findAllInfo(pageable);
     }
-}
\ No newline at end of file
+}
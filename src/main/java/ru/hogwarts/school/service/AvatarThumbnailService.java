@@ -0,0 +1,235 @@
+package ru.hogwarts.school.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+import ru.hogwarts.school.datasource.DataSourceRouting;
+import ru.hogwarts.school.event.AvatarUploadedEvent;
+import ru.hogwarts.school.storage.AvatarStorage;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+// Фоновая генерация квадратных миниатюр аватарок фиксированных размеров (PNG).
+// Миниатюры хранятся рядом с исходным содержимым как варианты "<размер>.png"
+@Service
+public class AvatarThumbnailService {
+
+    private static final Logger logger = LoggerFactory.getLogger(AvatarThumbnailService.class);
+
+    public static final String THUMBNAIL_MEDIA_TYPE = "image/png";
+
+    private final AvatarStorage avatarStorage;
+    private final List<Integer> sizes;
+    // Картинки больше этого числа пикселей не декодируются: маленький файл может объявить огромные размеры
+    private final long maxPixels;
+    private final ThreadPoolExecutor executor;
+    // Хэши, для которых генерация уже в очереди, чтобы не ставить ее повторно
+    private final Set<String> scheduled = ConcurrentHashMap.newKeySet();
+    // Хэши, для которых генерация не удалась (нет оригинала, не картинка, слишком большая): запросы ?size=
+    // не ставят их в очередь заново. Размер ограничен, запись живет failedTtl — временные ошибки перепроверяются
+    private final Cache<String, Boolean> failed;
+    private final LongAdder attempts = new LongAdder();
+
+    public AvatarThumbnailService(AvatarStorage avatarStorage,
+                                  @Value("${avatars.thumbnail.sizes:32,128}") List<Integer> sizes,
+                                  @Value("${avatars.thumbnail.max-pixels:40000000}") long maxPixels,
+                                  @Value("${avatars.thumbnail.threads:2}") int threads,
+                                  @Value("${avatars.thumbnail.queue-capacity:100}") int queueCapacity,
+                                  @Value("${avatars.thumbnail.failed-max-size:10000}") long failedMaxSize,
+                                  @Value("${avatars.thumbnail.failed-ttl:1h}") Duration failedTtl) {
+        this.avatarStorage = avatarStorage;
+        this.sizes = sizes.stream().sorted().toList();
+        this.maxPixels = maxPixels;
+        this.failed = Caffeine.newBuilder().maximumSize(failedMaxSize).expireAfterWrite(failedTtl).build();
+        AtomicInteger threadNumber = new AtomicInteger();
+        // Ограниченный пул: при переполнении очереди задача отбрасывается (см. schedule),
+        // и миниатюра будет поставлена в очередь повторно при следующем запросе
+        this.executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                task -> {
+                    Thread thread = new Thread(task, "thumbnail-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+
+    // После коммита загрузки ставим генерацию миниатюр в очередь; повторная загрузка того же содержимого
+    // (например, после удаления оригинала) снимает отметку о неудаче
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onAvatarUploaded(AvatarUploadedEvent event) {
+        failed.invalidate(event.contentHash());
+        schedule(event.contentHash());
+    }
+
+    // Наименьший из поддерживаемых размеров, не меньший запрошенного
+    public Optional<Integer> resolveSize(int requested) {
+        return sizes.stream().filter(size -> size >= requested).findFirst();
+    }
+
+    // Миниатюра, если она уже готова; иначе ставим ее генерацию в очередь и возвращаем пустой результат.
+    // Для содержимого, миниатюры которого сгенерировать не удалось, сразу возвращается пустой результат
+    public Optional<Resource> getThumbnail(String contentHash, int size) throws IOException {
+        if (isFailed(contentHash)) {
+            return Optional.empty();
+        }
+        Optional<Resource> thumbnail = avatarStorage.loadVariant(contentHash, variant(size));
+        if (thumbnail.isEmpty()) {
+            logger.debug("Thumbnail {} of {} is not ready yet", size, contentHash);
+            schedule(contentHash);
+        }
+        return thumbnail;
+    }
+
+    public boolean isFailed(String contentHash) {
+        return failed.getIfPresent(contentHash) != null;
+    }
+
+    // Число запущенных генераций (для проверки, что неудачные не повторяются)
+    public long getAttempts() {
+        return attempts.sum();
+    }
+
+    private void schedule(String contentHash) {
+        if (!scheduled.add(contentHash)) {
+            return;
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    // Загрузка только что закоммичена — читаем оригинал с основного сервера, реплика может отставать
+                    DataSourceRouting.onPrimary(() -> generate(contentHash));
+                } finally {
+                    scheduled.remove(contentHash);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            scheduled.remove(contentHash);
+            logger.warn("Thumbnail queue is full, generation for {} dropped", contentHash);
+        }
+    }
+
+    private void generate(String contentHash) {
+        attempts.increment();
+        try {
+            Optional<Resource> original = avatarStorage.load(contentHash);
+            if (original.isEmpty()) {
+                logger.warn("Avatar content {} is missing, thumbnails skipped", contentHash);
+                failed.put(contentHash, Boolean.TRUE);
+                return;
+            }
+            BufferedImage image;
+            try (InputStream in = original.get().getInputStream()) {
+                image = decode(in, contentHash);
+            }
+            if (image == null) {
+                failed.put(contentHash, Boolean.TRUE);
+                return;
+            }
+            for (int size : sizes) {
+                if (avatarStorage.loadVariant(contentHash, variant(size)).isEmpty()) {
+                    avatarStorage.saveVariant(contentHash, variant(size), toPng(scale(image, size)));
+                }
+            }
+            logger.debug("Thumbnails {} generated for {}", sizes, contentHash);
+        } catch (IOException | RuntimeException e) {
+            logger.error("Failed to generate thumbnails for {}", contentHash, e);
+            failed.put(contentHash, Boolean.TRUE);
+        }
+    }
+
+    // Размеры читаются из заголовка до декодирования пикселей. Крупная картинка читается с прореживанием:
+    // меньшая сторона остается не меньше самой большой миниатюры
+    private BufferedImage decode(InputStream in, String contentHash) throws IOException {
+        try (ImageInputStream stream = ImageIO.createImageInputStream(in)) {
+            Iterator<ImageReader> readers = stream != null ? ImageIO.getImageReaders(stream) : null;
+            if (readers == null || !readers.hasNext()) {
+                logger.debug("Avatar content {} is not a readable image, thumbnails skipped", contentHash);
+                return null;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(stream, true, true);
+                long width = reader.getWidth(0);
+                long height = reader.getHeight(0);
+                if (width * height > maxPixels) {
+                    logger.debug("Avatar content {} is {}x{} pixels, over the limit of {}, thumbnails skipped",
+                            contentHash, width, height, maxPixels);
+                    return null;
+                }
+                int step = (int) Math.max(1, Math.min(width, height) / sizes.get(sizes.size() - 1));
+                ImageReadParam param = reader.getDefaultReadParam();
+                param.setSourceSubsampling(step, step, 0, 0);
+                return reader.read(0, param);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    // Вырезаем центральный квадрат и масштабируем его до size x size
+    private static BufferedImage scale(BufferedImage source, int size) {
+        int side = Math.min(source.getWidth(), source.getHeight());
+        int x = (source.getWidth() - side) / 2;
+        int y = (source.getHeight() - side) / 2;
+
+        BufferedImage thumbnail = new BufferedImage(size, size, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D graphics = thumbnail.createGraphics();
+        try {
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            graphics.drawImage(source, 0, 0, size, size, x, y, x + side, y + side, null);
+        } finally {
+            graphics.dispose();
+        }
+        return thumbnail;
+    }
+
+    private static byte[] toPng(BufferedImage image) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", out);
+        return out.toByteArray();
+    }
+
+    private static String variant(int size) {
+        return size + ".png";
+    }
+
+    // Очередь отбрасывается, начатая генерация дописывает миниатюры, пока хранилище еще доступно
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+        try {
+            if (!executor.awaitTermination(5, TimeUnit.SECONDS)) {
+                logger.warn("Thumbnail generation did not stop in time");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,254 @@
+package ru.hogwarts.school.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import ru.hogwarts.school.datasource.DataSourceRouting;
+import ru.hogwarts.school.event.FacultyChangedEvent;
+import ru.hogwarts.school.event.StudentChangedEvent;
+import ru.hogwarts.school.event.StudentsReassignedEvent;
+import ru.hogwarts.school.event.TransactionSnapshot;
+import ru.hogwarts.school.model.Faculty;
+import ru.hogwarts.school.repository.FacultyRepository;
+import ru.hogwarts.school.repository.StudentRepository;
+
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.TreeSet;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Упорядоченные метрики по факультетам (самое длинное название, факультет с наибольшим числом студентов),
+// которые поддерживаются по событиям изменений факультетов и студентов.
+// При холодном старте и после массовых изменений загружаются из БД одним запросом.
+// Загрузка идет под блокировкой, поэтому это ReentrantLock: synchronized закреплял бы виртуальный поток за носителем
+@Component
+public class FacultyMetrics {
+
+    private static final Logger logger = LoggerFactory.getLogger(FacultyMetrics.class);
+
+    // Сколько самых длинных названий держим в памяти: запас на удаление и переименование лидеров
+    static final int LONGEST_NAMES_SIZE = 16;
+
+    private static final Comparator<NameEntry> BY_LENGTH = Comparator.comparingInt(NameEntry::length).reversed()
+            .thenComparing(NameEntry::id);
+    private static final Comparator<CountEntry> BY_STUDENTS = Comparator.comparingLong(CountEntry::students).reversed()
+            .thenComparing(CountEntry::id);
+
+    private final FacultyRepository facultyRepository;
+    private final StudentRepository studentRepository;
+    private final TransactionSnapshots transactionSnapshots;
+    private final Lock lock = new ReentrantLock();
+
+    // Первые LONGEST_NAMES_SIZE факультетов по длине названия. complete — в наборе все факультеты
+    private final TreeSet<NameEntry> longestNames = new TreeSet<>(BY_LENGTH);
+    private final Map<Long, NameEntry> longestNamesById = new HashMap<>();
+    private boolean namesLoaded;
+    private boolean namesComplete;
+
+    // Количество студентов по всем факультетам: счетчики меняются в обе стороны, поэтому храним их полностью
+    private final TreeSet<CountEntry> studentCounts = new TreeSet<>(BY_STUDENTS);
+    private final Map<Long, CountEntry> studentCountsById = new HashMap<>();
+    private boolean countsLoaded;
+    // Снимок, с которым прочитаны счетчики
+    private TransactionSnapshot countsBase;
+
+    public FacultyMetrics(FacultyRepository facultyRepository, StudentRepository studentRepository,
+                          TransactionSnapshots transactionSnapshots) {
+        this.facultyRepository = facultyRepository;
+        this.studentRepository = studentRepository;
+        this.transactionSnapshots = transactionSnapshots;
+    }
+
+    // Самое длинное название факультета
+    public Optional<String> getLongestName() {
+        lock.lock();
+        try {
+            if (!namesLoaded || (longestNames.isEmpty() && !namesComplete)) {
+                loadNames();
+            }
+            return longestNames.isEmpty() ? Optional.empty() : Optional.of(longestNames.first().name());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Id факультета с наибольшим количеством студентов (при равенстве — с меньшим id)
+    public Optional<Long> getFacultyIdWithMostStudents() {
+        lock.lock();
+        try {
+            if (!countsLoaded) {
+                loadCounts();
+            }
+            return studentCounts.isEmpty() ? Optional.empty() : Optional.of(studentCounts.first().id());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Количество студентов факультета по счетчикам
+    public long getStudentCount(Long facultyId) {
+        lock.lock();
+        try {
+            if (!countsLoaded) {
+                loadCounts();
+            }
+            CountEntry entry = studentCountsById.get(facultyId);
+            return entry != null ? entry.students() : 0;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onFacultyChanged(FacultyChangedEvent event) {
+        // Изменение только что закоммичено: реплика может его еще не получить
+        Optional<Faculty> faculty = DataSourceRouting.onPrimary(() -> facultyRepository.findById(event.facultyId()));
+        lock.lock();
+        try {
+            removeName(event.facultyId());
+            faculty.ifPresent(this::addName);
+            if (faculty.isEmpty()) {
+                setCount(event.facultyId(), 0);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Применяем изменение только после успешного коммита транзакции.
+    // Изменение, уже попавшее в загруженные счетчики, пропускаем — иначе студент был бы учтен дважды
+    @TransactionalEventListener
+    public void onStudentChanged(StudentChangedEvent event) {
+        Long before = event.before() != null ? event.before().facultyId() : null;
+        Long after = event.after() != null ? event.after().facultyId() : null;
+        if (Objects.equals(before, after)) {
+            return;
+        }
+        lock.lock();
+        try {
+            if (!countsLoaded || countsBase.includes(event.transactionId())) {
+                return;
+            }
+            if (before != null) {
+                addCount(before, -1);
+            }
+            if (after != null) {
+                addCount(after, 1);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // После перевода студентов одним UPDATE прежние факультеты неизвестны — перечитываем счетчики
+    @TransactionalEventListener
+    public void onStudentsReassigned(StudentsReassignedEvent event) {
+        lock.lock();
+        try {
+            countsLoaded = false;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Периодически сбрасываем метрики, чтобы исправить расхождения от изменений в обход сервисов
+    @Scheduled(fixedDelayString = "${faculties.metrics.reload-interval-ms:600000}")
+    public void invalidate() {
+        lock.lock();
+        try {
+            namesLoaded = false;
+            countsLoaded = false;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void loadNames() {
+        longestNames.clear();
+        longestNamesById.clear();
+        // Дальше метрики поддерживаются событиями после коммита, поэтому загружаем с основного сервера, а не с реплики:
+        // отставшая реплика потеряла бы изменения, события которых уже пришли
+        List<Faculty> faculties = DataSourceRouting.onPrimary(
+                () -> facultyRepository.findLongestNames(Limit.of(LONGEST_NAMES_SIZE)));
+        faculties.forEach(faculty -> putName(new NameEntry(faculty.getId(), faculty.getName())));
+        namesComplete = faculties.size() < LONGEST_NAMES_SIZE;
+        namesLoaded = true;
+        logger.debug("Faculty longest names loaded: {} entries, complete = {}", faculties.size(), namesComplete);
+    }
+
+    private void addName(Faculty faculty) {
+        if (!namesLoaded || faculty.getName() == null) {
+            return;
+        }
+        NameEntry entry = new NameEntry(faculty.getId(), faculty.getName());
+        // Вне набора могут быть факультеты длиннее последнего элемента, поэтому добавляем только тех, кто его обходит
+        if (namesComplete || (!longestNames.isEmpty() && BY_LENGTH.compare(entry, longestNames.last()) < 0)) {
+            putName(entry);
+            if (longestNames.size() > LONGEST_NAMES_SIZE) {
+                longestNamesById.remove(longestNames.pollLast().id());
+                namesComplete = false;
+            }
+        }
+    }
+
+    private void putName(NameEntry entry) {
+        longestNames.add(entry);
+        longestNamesById.put(entry.id(), entry);
+    }
+
+    private void removeName(Long id) {
+        NameEntry entry = longestNamesById.remove(id);
+        if (entry != null) {
+            longestNames.remove(entry);
+        }
+    }
+
+    // Счетчики читаются вместе со снимком. Загрузка идет под блокировкой, поэтому события, пришедшие во время нее,
+    // ждут и применяются после — только если снимок их еще не учел
+    private void loadCounts() {
+        studentCounts.clear();
+        studentCountsById.clear();
+        TransactionSnapshots.SnapshotRead<List<StudentRepository.FacultyStudents>> read =
+                transactionSnapshots.read(studentRepository::countStudentsByFaculty);
+        read.value().forEach(row -> setCount(row.getFacultyId(), row.getStudents()));
+        countsBase = read.snapshot();
+        countsLoaded = true;
+        logger.debug("Faculty student counts loaded: {} faculties", studentCounts.size());
+    }
+
+    private void addCount(Long id, long delta) {
+        CountEntry entry = studentCountsById.get(id);
+        setCount(id, (entry != null ? entry.students() : 0) + delta);
+    }
+
+    private void setCount(Long id, long students) {
+        CountEntry previous = studentCountsById.remove(id);
+        if (previous != null) {
+            studentCounts.remove(previous);
+        }
+        if (students > 0) {
+            CountEntry entry = new CountEntry(id, students);
+            studentCounts.add(entry);
+            studentCountsById.put(id, entry);
+        }
+    }
+
+    private record NameEntry(Long id, String name) {
+
+        // Длина в символах, как length() в Postgres
+        int length() {
+            return name.codePointCount(0, name.length());
+        }
+    }
+
+    private record CountEntry(Long id, long students) {
+    }
+}
@@ -3,13 +3,27 @@ package ru.hogwarts.school.service;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.cache.annotation.Caching;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionalEventListener;
+import ru.hogwarts.school.config.CacheConfig;
+import ru.hogwarts.school.datasource.DataSourceRouting;
+import ru.hogwarts.school.dto.CursorPage;
+import ru.hogwarts.school.dto.FacultyAssignmentRequest;
+import ru.hogwarts.school.event.FacultyChangedEvent;
+import ru.hogwarts.school.event.StudentsReassignedEvent;
 import ru.hogwarts.school.model.Faculty;
 import ru.hogwarts.school.model.Student;
 import ru.hogwarts.school.repository.FacultyRepository;
+import ru.hogwarts.school.repository.StudentRepository;
+import ru.hogwarts.school.search.FacultySearch;
 
 import java.util.*;
-import java.util.stream.Collectors;
 
 @Service
 public class FacultyService {
@@ -17,39 +31,53 @@ public class FacultyService {
     private static final Logger logger = LoggerFactory.getLogger(FacultyService.class);
 
     private final FacultyRepository facultyRepository;
+    private final StudentRepository studentRepository;
+    private final FacultySearch facultySearch;
+    private final FacultyMetrics facultyMetrics;
+    private final TransactionSnapshots transactionSnapshots;
+    private final ApplicationEventPublisher eventPublisher;
 
     @Autowired
-    public FacultyService(FacultyRepository facultyRepository) {
+    public FacultyService(FacultyRepository facultyRepository, StudentRepository studentRepository,
+                          FacultySearch facultySearch, FacultyMetrics facultyMetrics,
+                          TransactionSnapshots transactionSnapshots, ApplicationEventPublisher eventPublisher) {
         this.facultyRepository = facultyRepository;
+        this.studentRepository = studentRepository;
+        this.facultySearch = facultySearch;
+        this.facultyMetrics = facultyMetrics;
+        this.transactionSnapshots = transactionSnapshots;
+        this.eventPublisher = eventPublisher;
     }
 
-    // Метод для создания нового факультета
+    // Метод для создания нового факультета (кэши сбрасываются после коммита, см. onFacultyChanged)
+    @Transactional
     public Faculty createFaculty(String name, String color) {
-        logger.info("Was invoked method for create faculty");
         logger.debug("Creating faculty with name = {}, color = {}", name, color);
 
         Faculty faculty = new Faculty(name, color);
         Faculty saved = facultyRepository.save(faculty);
+        eventPublisher.publishEvent(new FacultyChangedEvent(saved.getId()));
         logger.debug("Faculty created with id = {}", saved.getId());
         return saved;
     }
 
 
-    // Метод для получения факультета по ID
+    // Метод для получения факультета по ID (через кэш).
+    // Кэш заполняется с основного сервера: значение с отстающей реплики сразу после сброса кэша жило бы в нем до истечения срока
+    @Cacheable(cacheNames = CacheConfig.FACULTIES, key = "#id", unless = "#result == null")
     public Faculty getFaculty(Long id) {
-        logger.info("Was invoked method for get faculty by id");
         logger.debug("Fetching faculty with id = {}", id);
 
-        Optional<Faculty> faculty = facultyRepository.findById(id);
+        Optional<Faculty> faculty = DataSourceRouting.onPrimary(() -> facultyRepository.findById(id));
         if (faculty.isEmpty()) {
             logger.warn("No faculty found with id = {}", id);
         }
         return faculty.orElse(null);
     }
 
-    // Метод для обновления информации о факультете
+    // Метод для обновления информации о факультете (кэши сбрасываются после коммита, см. onFacultyChanged)
+    @Transactional
     public boolean updateFaculty(Long id, String name, String color) {
-        logger.info("Was invoked method for update faculty");
         logger.debug("Updating faculty with id = {}, new name = {}, new color = {}", id, name, color);
 
         Optional<Faculty> facultyOptional = facultyRepository.findById(id);
@@ -58,6 +86,7 @@ public class FacultyService {
             faculty.setName(name);
             faculty.setColor(color);
             facultyRepository.save(faculty);
+            eventPublisher.publishEvent(new FacultyChangedEvent(id));
             logger.debug("Faculty with id = {} successfully updated", id);
             return true;
         } else {
@@ -66,13 +95,14 @@ public class FacultyService {
         }
     }
 
-    // Метод для удаления факультета по ID
+    // Метод для удаления факультета по ID (кэши сбрасываются после коммита, см. onFacultyChanged)
+    @Transactional
     public boolean deleteFaculty(Long id) {
-        logger.info("Was invoked method for delete faculty");
         logger.debug("Trying to delete faculty with id = {}", id);
 
         if (facultyRepository.existsById(id)) {
             facultyRepository.deleteById(id);
+            eventPublisher.publishEvent(new FacultyChangedEvent(id));
             logger.debug("Faculty with id = {} successfully deleted", id);
             return true;
         } else {
@@ -81,41 +111,60 @@ public class FacultyService {
         }
     }
 
-    // Метод для получения всех факультетов
+    // Сброс кэшей факультетов после коммита изменения. Сброс до коммита не помогает: параллельный промах кэша
+    // успел бы прочитать старую строку и вернуть ее в кэш до истечения срока
+    @TransactionalEventListener(fallbackExecution = true)
+    @Caching(evict = {
+            @CacheEvict(cacheNames = CacheConfig.FACULTIES, key = "#event.facultyId()"),
+            @CacheEvict(cacheNames = {CacheConfig.FACULTY_LIST, CacheConfig.FACULTIES_BY_COLOR}, allEntries = true)
+    })
+    public void onFacultyChanged(FacultyChangedEvent event) {
+        logger.debug("Faculty caches evicted after change of faculty with id = {}", event.facultyId());
+    }
+
+    // Метод для получения всех факультетов (через кэш; список неизменяемый, так как разделяется между запросами)
+    @Cacheable(CacheConfig.FACULTY_LIST)
     public List<Faculty> getAllFaculties() {
-        logger.info("Was invoked method for get all faculties");
-        List<Faculty> faculties = facultyRepository.findAll();
+        List<Faculty> faculties = List.copyOf(DataSourceRouting.onPrimary(() -> facultyRepository.findAll()));
         logger.debug("Found {} faculties", faculties.size());
         return faculties;
     }
 
-    // Метод для поиска факультетов по цвету
+    // Метод для получения факультетов постранично по курсору (id последнего полученного факультета)
+    @Transactional(readOnly = true)
+    public CursorPage<Faculty> getFacultiesAfter(long afterId, int limit) {
+        logger.debug("Fetching faculties after id = {}, limit = {}", afterId, limit);
+
+        int pageSize = CursorPage.normalizeLimit(limit);
+        List<Faculty> faculties = facultyRepository.findByIdGreaterThanOrderByIdAsc(afterId, Limit.of(pageSize + 1));
+        return CursorPage.of(faculties, pageSize, Faculty::getId);
+    }
+
+    // Метод для поиска факультетов по цвету без учета регистра (через кэш по цвету в нижнем регистре)
+    @Cacheable(cacheNames = CacheConfig.FACULTIES_BY_COLOR, key = "#color.trim().toLowerCase(T(java.util.Locale).ROOT)")
     public List<Faculty> getFacultiesByColor(String color) {
-        logger.info("Was invoked method for get faculties by color");
         logger.debug("Filtering faculties by color = {}", color);
 
-        List<Faculty> filtered = facultyRepository.findAll()
-                .stream()
-                .filter(faculty -> faculty.getColor().equalsIgnoreCase(color))
-                .collect(Collectors.toList());
-
+        List<Faculty> filtered = List.copyOf(DataSourceRouting.onPrimary(
+                () -> facultyRepository.findByLowerColor(color.trim().toLowerCase(Locale.ROOT))));
         logger.debug("Found {} faculties with color = {}", filtered.size(), color);
         return filtered;
     }
 
-    // Метод для поиска факультетов по имени или цвету с игнорированием регистра
-    public List<Faculty> searchFacultiesByNameOrColor(String searchTerm) {
-        logger.info("Was invoked method for search faculties by name or color");
-        logger.debug("Searching faculties with term = {}", searchTerm);
+    // Метод для поиска факультетов по подстроке в имени или цвете с игнорированием регистра,
+    // постранично и по убыванию похожести на запрос
+    @Transactional(readOnly = true)
+    public List<Faculty> searchFacultiesByNameOrColor(String searchTerm, int page, int size) {
+        logger.debug("Searching faculties with term = {}, page = {}, size = {}", searchTerm, page, size);
 
-        List<Faculty> results = facultyRepository.findByNameIgnoreCaseContainingOrColorIgnoreCaseContaining(searchTerm, searchTerm);
+        List<Faculty> results = facultySearch.search(searchTerm, Math.max(page, 0), CursorPage.normalizeLimit(size));
         logger.debug("Found {} faculties matching search term = {}", results.size(), searchTerm);
         return results;
     }
 
     // Метод для получения студентов факультета
+    @Transactional(readOnly = true)
     public List<Student> getFacultyStudents(Long facultyId) {
-        logger.info("Was invoked method for get students of faculty");
         logger.debug("Fetching students for facultyId = {}", facultyId);
 
         List<Student> students = facultyRepository.findStudentsById(facultyId);
@@ -123,13 +172,49 @@ public class FacultyService {
         return students;
     }
 
-    // Метод для получения самого длинного названия факультета
+    // Метод для получения студентов факультета постранично по курсору
+    @Transactional(readOnly = true)
+    public CursorPage<Student> getFacultyStudentsAfter(Long facultyId, long afterId, int limit) {
+        logger.debug("Fetching students for facultyId = {} after id = {}, limit = {}", facultyId, afterId, limit);
+
+        int pageSize = CursorPage.normalizeLimit(limit);
+        List<Student> students = studentRepository.findByFacultyIdAndIdGreaterThanOrderByIdAsc(
+                facultyId, afterId, Limit.of(pageSize + 1));
+        return CursorPage.of(students, pageSize, Student::getId);
+    }
+
+    // Метод для перевода группы студентов на факультет одним UPDATE.
+    // Возвращает количество переведенных студентов или null, если факультет не найден
+    @Transactional
+    public Integer assignStudents(Long facultyId, FacultyAssignmentRequest request) {
+        logger.debug("Assigning students to facultyId = {} by {}", facultyId, request);
+
+        if (!facultyRepository.existsById(facultyId)) {
+            logger.warn("No faculty found with id = {}", facultyId);
+            return null;
+        }
+        Faculty faculty = facultyRepository.getReferenceById(facultyId);
+        int updated = request.hasStudentIds()
+                ? studentRepository.assignFacultyByIds(faculty, new HashSet<>(request.studentIds()))
+                : studentRepository.assignFacultyByAgeBetween(faculty, request.minAge(), request.maxAge());
+        eventPublisher.publishEvent(new StudentsReassignedEvent(facultyId, updated,
+                transactionSnapshots.currentTransactionId()));
+        logger.debug("Assigned {} students to facultyId = {}", updated, facultyId);
+        return updated;
+    }
+
+    // Метод для получения самого длинного названия факультета (из поддерживаемых метрик)
     public String getLongestFacultyName() {
-        List<Faculty> faculties = facultyRepository.findAll();
+        return facultyMetrics.getLongestName().orElse("");
+    }
 
-        return faculties.stream()
-                .map(Faculty::getName)
-                .max(Comparator.comparingInt(String::length))
-                .orElse("");
+    // Метод для получения факультета с наибольшим количеством студентов
+    @Transactional(readOnly = true)
+    public Faculty getFacultyWithMostStudents() {
+        Optional<Faculty> faculty = facultyMetrics.getFacultyIdWithMostStudents().flatMap(facultyRepository::findById);
+        if (faculty.isEmpty()) {
+            logger.warn("No faculty with students found");
+        }
+        return faculty.orElse(null);
     }
 }
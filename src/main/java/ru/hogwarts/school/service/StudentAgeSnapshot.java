@@ -0,0 +1,272 @@
+package ru.hogwarts.school.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import ru.hogwarts.school.dto.StudentStats;
+import ru.hogwarts.school.event.StudentChangedEvent;
+import ru.hogwarts.school.event.StudentsReassignedEvent;
+import ru.hogwarts.school.event.TransactionSnapshot;
+import ru.hogwarts.school.repository.StudentRepository;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// Колоночный снимок студентов в памяти для статистики возрастов: id, возраст и код факультета в примитивных массивах,
+// строки упорядочены по id. Поддерживается инкрементально после коммита изменений и периодически перестраивается из БД.
+// Статистика считается по массивам параллельно в общем пуле fork/join (см. AgeStatistics)
+@Component
+public class StudentAgeSnapshot {
+
+    private static final Logger logger = LoggerFactory.getLogger(StudentAgeSnapshot.class);
+
+    // Код факультета удаленной строки: такие строки пропускаются и вычищаются при уплотнении
+    static final int DELETED = -1;
+    // Удаленных строк меньше этого числа не уплотняем
+    static final int MIN_COMPACT_DELETED = 1024;
+
+    private final StudentRepository studentRepository;
+    private final TransactionSnapshots transactionSnapshots;
+    // Статистика считается под блокировкой чтения, изменения применяются под блокировкой записи
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    // Одна перестройка за раз
+    private final Lock rebuildLock = new ReentrantLock();
+
+    private Columns columns = new Columns(0);
+    // Снимок, с которым прочитаны строки последней перестройки
+    private TransactionSnapshot base;
+    // События, пришедшие во время перестройки: изменения студентов и id транзакций переводов
+    private List<StudentChangedEvent> pending;
+    private List<Long> pendingReassignments;
+    private volatile boolean loaded;
+
+    public StudentAgeSnapshot(StudentRepository studentRepository, TransactionSnapshots transactionSnapshots) {
+        this.studentRepository = studentRepository;
+        this.transactionSnapshots = transactionSnapshots;
+    }
+
+    // Статистика возрастов по текущему снимку
+    public StudentStats getStats() {
+        ensureLoaded();
+        ForkJoinPool pool = ForkJoinPool.commonPool();
+        lock.readLock().lock();
+        try {
+            Columns current = columns;
+            return new AgeStatistics(current.ages, current.faculties, current.size, current.facultyIds, current.codes,
+                    pool.getParallelism()).compute(pool);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Применяем изменение только после успешного коммита транзакции.
+    // Изменение, уже попавшее в строки последней перестройки, пропускаем
+    @TransactionalEventListener
+    public void onStudentChanged(StudentChangedEvent event) {
+        lock.writeLock().lock();
+        try {
+            if (pending != null) {
+                pending.add(event);
+            }
+            if (base == null || !base.includes(event.transactionId())) {
+                apply(columns, event);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // После перевода студентов одним UPDATE неизвестно, какие строки изменились — перечитываем снимок при следующем запросе.
+    // Перевод, уже попавший в строки последней перестройки, перечитывать не нужно
+    @TransactionalEventListener
+    public void onStudentsReassigned(StudentsReassignedEvent event) {
+        lock.writeLock().lock();
+        try {
+            if (pendingReassignments != null) {
+                pendingReassignments.add(event.transactionId());
+            }
+            if (base == null || !base.includes(event.transactionId())) {
+                loaded = false;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Периодическая перестройка из БД исправляет расхождения от изменений в обход сервиса.
+    // Новые колонки заполняются без блокировки и подменяют старые целиком; изменения, пришедшие во время перестройки,
+    // применяются к новым колонкам, если прочитанные строки их не учли. Перевод, не попавший в прочитанные строки,
+    // оставляет снимок незагруженным — он перечитается при следующем запросе
+    @Scheduled(fixedDelayString = "${students.stats.rebuild-interval-ms:600000}")
+    public void rebuild() {
+        rebuildLock.lock();
+        try {
+            setPending(new ArrayList<>(), new ArrayList<>());
+            TransactionSnapshots.SnapshotRead<List<StudentRepository.StudentAgeRow>> read;
+            try {
+                read = transactionSnapshots.read(studentRepository::findAgeRows);
+            } catch (RuntimeException e) {
+                setPending(null, null);
+                throw e;
+            }
+            List<StudentRepository.StudentAgeRow> rows = read.value();
+            Columns rebuilt = new Columns(rows.size());
+            for (StudentRepository.StudentAgeRow row : rows) {
+                rebuilt.append(row.getId(), row.getAge(), row.getFacultyId());
+            }
+            TransactionSnapshot snapshot = read.snapshot();
+            lock.writeLock().lock();
+            try {
+                for (StudentChangedEvent event : pending) {
+                    if (!snapshot.includes(event.transactionId())) {
+                        apply(rebuilt, event);
+                    }
+                }
+                columns = rebuilt;
+                base = snapshot;
+                loaded = pendingReassignments.stream().allMatch(snapshot::includes);
+                pending = null;
+                pendingReassignments = null;
+            } finally {
+                lock.writeLock().unlock();
+            }
+            logger.debug("Student age snapshot rebuilt: {} students, {} faculty codes", rebuilt.size, rebuilt.codes);
+        } finally {
+            rebuildLock.unlock();
+        }
+    }
+
+    private static void apply(Columns columns, StudentChangedEvent event) {
+        if (event.after() == null) {
+            columns.remove(event.studentId());
+        } else {
+            columns.put(event.studentId(), event.after().age(), event.after().facultyId());
+        }
+    }
+
+    private void setPending(List<StudentChangedEvent> events, List<Long> reassignments) {
+        lock.writeLock().lock();
+        try {
+            pending = events;
+            pendingReassignments = reassignments;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void ensureLoaded() {
+        if (!loaded) {
+            rebuild();
+        }
+    }
+
+    // Колонки снимка. Удаление только помечает строку, чтобы не сдвигать массивы на каждое изменение.
+    // Факультеты хранятся кодами из словаря: код 0 — без факультета
+    private static final class Columns {
+        private long[] ids;
+        private int[] ages;
+        private int[] faculties;
+        private int size;
+        private int deleted;
+
+        private long[] facultyIds = new long[8];
+        private int codes = 1;
+        private final Map<Long, Integer> facultyCodes = new HashMap<>();
+
+        private Columns(int capacity) {
+            ids = new long[capacity];
+            ages = new int[capacity];
+            faculties = new int[capacity];
+        }
+
+        // Добавление строки в конец: при перестройке строки приходят в порядке id
+        private void append(long id, int age, Long facultyId) {
+            insertAt(size, id, age, code(facultyId));
+        }
+
+        // Новые студенты обычно получают наибольший id и попадают в конец, остальные вставляются со сдвигом
+        private void put(long id, int age, Long facultyId) {
+            int index = Arrays.binarySearch(ids, 0, size, id);
+            if (index >= 0) {
+                if (faculties[index] == DELETED) {
+                    deleted--;
+                }
+                ages[index] = age;
+                faculties[index] = code(facultyId);
+            } else {
+                insertAt(-index - 1, id, age, code(facultyId));
+            }
+        }
+
+        private void remove(long id) {
+            int index = Arrays.binarySearch(ids, 0, size, id);
+            if (index < 0 || faculties[index] == DELETED) {
+                return;
+            }
+            faculties[index] = DELETED;
+            deleted++;
+            if (deleted >= MIN_COMPACT_DELETED && deleted > size / 2) {
+                compact();
+            }
+        }
+
+        private void insertAt(int index, long id, int age, int faculty) {
+            if (size == ids.length) {
+                int capacity = Math.max(16, size + (size >> 1));
+                ids = Arrays.copyOf(ids, capacity);
+                ages = Arrays.copyOf(ages, capacity);
+                faculties = Arrays.copyOf(faculties, capacity);
+            }
+            int tail = size - index;
+            if (tail > 0) {
+                System.arraycopy(ids, index, ids, index + 1, tail);
+                System.arraycopy(ages, index, ages, index + 1, tail);
+                System.arraycopy(faculties, index, faculties, index + 1, tail);
+            }
+            ids[index] = id;
+            ages[index] = age;
+            faculties[index] = faculty;
+            size++;
+        }
+
+        private void compact() {
+            int kept = 0;
+            for (int i = 0; i < size; i++) {
+                if (faculties[i] != DELETED) {
+                    ids[kept] = ids[i];
+                    ages[kept] = ages[i];
+                    faculties[kept] = faculties[i];
+                    kept++;
+                }
+            }
+            size = kept;
+            deleted = 0;
+        }
+
+        private int code(Long facultyId) {
+            if (facultyId == null) {
+                return 0;
+            }
+            Integer code = facultyCodes.get(facultyId);
+            if (code != null) {
+                return code;
+            }
+            if (codes == facultyIds.length) {
+                facultyIds = Arrays.copyOf(facultyIds, codes * 2);
+            }
+            facultyIds[codes] = facultyId;
+            facultyCodes.put(facultyId, codes);
+            return codes++;
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package ru.hogwarts.school.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import ru.hogwarts.school.event.StudentChangedEvent;
+import ru.hogwarts.school.event.TransactionSnapshot;
+import ru.hogwarts.school.repository.StudentRepository;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Агрегаты по студентам (количество, сумма возрастов), которые поддерживаются инкрементально
+// после коммита изменений и периодически сверяются с БД.
+// Счетчики = итоги из БД на снимок base + изменения из транзакций, не попавших в этот снимок
+@Component
+public class StudentAggregates {
+
+    private static final Logger logger = LoggerFactory.getLogger(StudentAggregates.class);
+
+    private final StudentRepository studentRepository;
+    private final TransactionSnapshots transactionSnapshots;
+    // Одна сверка за раз: запрос к БД выполняется под этой блокировкой
+    private final Lock reconcileLock = new ReentrantLock();
+    // События и подмена итогов при сверке применяются под одной блокировкой
+    private final Lock lock = new ReentrantLock();
+
+    private long count;
+    private long ageSum;
+    // Снимок, с которым прочитаны итоги последней сверки
+    private TransactionSnapshot base;
+    // События, пришедшие во время запроса сверки: после него применяются к новым итогам, если снимок их не учел
+    private List<StudentChangedEvent> pending;
+
+    private volatile boolean loaded;
+    private volatile long lastReconciledAt;
+
+    public StudentAggregates(StudentRepository studentRepository, TransactionSnapshots transactionSnapshots) {
+        this.studentRepository = studentRepository;
+        this.transactionSnapshots = transactionSnapshots;
+    }
+
+    // Количество студентов
+    public long getCount() {
+        ensureLoaded();
+        lock.lock();
+        try {
+            return count;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Средний возраст студентов
+    public double getAverageAge() {
+        ensureLoaded();
+        lock.lock();
+        try {
+            return count > 0 ? (double) ageSum / count : 0.0;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Время последней сверки с БД (epoch millis), 0 — сверки еще не было
+    public long getLastReconciledAt() {
+        return lastReconciledAt;
+    }
+
+    // Применяем изменение только после успешного коммита транзакции.
+    // Изменение, уже попавшее в итоги последней сверки, пропускаем
+    @TransactionalEventListener
+    public void onStudentChanged(StudentChangedEvent event) {
+        lock.lock();
+        try {
+            if (pending != null) {
+                pending.add(event);
+            }
+            if (base == null || !base.includes(event.transactionId())) {
+                apply(event);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Периодическая сверка с БД исправляет расхождения от изменений в обход сервиса
+    @Scheduled(fixedDelayString = "${students.aggregates.reconcile-interval-ms:60000}")
+    public void reconcile() {
+        reconcileLock.lock();
+        try {
+            setPending(new ArrayList<>());
+            TransactionSnapshots.SnapshotRead<StudentRepository.StudentTotals> read;
+            try {
+                read = transactionSnapshots.read(studentRepository::findStudentTotals);
+            } catch (RuntimeException e) {
+                setPending(null);
+                throw e;
+            }
+            lock.lock();
+            try {
+                count = read.value().getTotal();
+                ageSum = read.value().getAgeSum();
+                // События до начала запроса закоммичены раньше снимка и уже в итогах; из пришедших во время запроса
+                // добавляем те, чьи транзакции снимок не учел
+                for (StudentChangedEvent event : pending) {
+                    if (!read.snapshot().includes(event.transactionId())) {
+                        apply(event);
+                    }
+                }
+                base = read.snapshot();
+                pending = null;
+            } finally {
+                lock.unlock();
+            }
+            lastReconciledAt = System.currentTimeMillis();
+            loaded = true;
+            logger.debug("Student aggregates reconciled: count = {}, ageSum = {}",
+                    read.value().getTotal(), read.value().getAgeSum());
+        } finally {
+            reconcileLock.unlock();
+        }
+    }
+
+    private void apply(StudentChangedEvent event) {
+        if (event.before() != null) {
+            count--;
+            ageSum -= event.before().age();
+        }
+        if (event.after() != null) {
+            count++;
+            ageSum += event.after().age();
+        }
+    }
+
+    private void setPending(List<StudentChangedEvent> events) {
+        lock.lock();
+        try {
+            pending = events;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void ensureLoaded() {
+        if (!loaded) {
+            reconcile();
+        }
+    }
+}
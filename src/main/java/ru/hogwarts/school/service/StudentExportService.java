@@ -0,0 +1,57 @@
+package ru.hogwarts.school.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import jakarta.persistence.EntityManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import ru.hogwarts.school.model.Student;
+import ru.hogwarts.school.repository.StudentRepository;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+@Service
+public class StudentExportService {
+
+    private static final Logger logger = LoggerFactory.getLogger(StudentExportService.class);
+
+    private final StudentRepository studentRepository;
+    private final EntityManager entityManager;
+    private final ObjectWriter studentWriter;
+
+    public StudentExportService(StudentRepository studentRepository, EntityManager entityManager, ObjectMapper objectMapper) {
+        this.studentRepository = studentRepository;
+        this.entityManager = entityManager;
+        // Сбрасываем буфер сами, а не после каждой строки
+        this.studentWriter = objectMapper.writerFor(Student.class)
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+    }
+
+    // Метод для выгрузки всех студентов в формате NDJSON (одна JSON-строка на студента).
+    // Строки читаются курсором БД и сразу отсоединяются от контекста, поэтому память не растет с размером таблицы
+    @Transactional(readOnly = true)
+    public long exportStudents(OutputStream out) throws IOException {
+        long exported = 0;
+        try (Stream<Student> students = studentRepository.streamAllByOrderByIdAsc();
+             JsonGenerator generator = studentWriter.createGenerator(out)) {
+            Iterator<Student> iterator = students.iterator();
+            while (iterator.hasNext()) {
+                Student student = iterator.next();
+                studentWriter.writeValue(generator, student);
+                generator.writeRaw('\n');
+                entityManager.detach(student);
+                exported++;
+            }
+        }
+
+        logger.debug("Exported {} students", exported);
+        return exported;
+    }
+}
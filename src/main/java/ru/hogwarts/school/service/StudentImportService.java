@@ -0,0 +1,248 @@
+package ru.hogwarts.school.service;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.core.NestedExceptionUtils;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.hogwarts.school.dto.BulkImportResult;
+import ru.hogwarts.school.event.StudentChangedEvent;
+import ru.hogwarts.school.model.Faculty;
+import ru.hogwarts.school.model.Student;
+import ru.hogwarts.school.repository.FacultyRepository;
+import ru.hogwarts.school.repository.StudentRepository;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+@Service
+public class StudentImportService {
+
+    private static final Logger logger = LoggerFactory.getLogger(StudentImportService.class);
+
+    private final StudentRepository studentRepository;
+    private final FacultyRepository facultyRepository;
+    private final EntityManager entityManager;
+    private final TransactionSnapshots transactionSnapshots;
+    private final ApplicationEventPublisher eventPublisher;
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate transactionTemplate;
+    private final int chunkSize;
+
+    @Autowired
+    public StudentImportService(StudentRepository studentRepository, FacultyRepository facultyRepository,
+                                EntityManager entityManager, TransactionSnapshots transactionSnapshots,
+                                ApplicationEventPublisher eventPublisher,
+                                ObjectMapper objectMapper, PlatformTransactionManager transactionManager,
+                                @Value("${students.import.chunk-size:1000}") int chunkSize) {
+        this.studentRepository = studentRepository;
+        this.facultyRepository = facultyRepository;
+        this.entityManager = entityManager;
+        this.transactionSnapshots = transactionSnapshots;
+        this.eventPublisher = eventPublisher;
+        this.objectMapper = objectMapper;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.chunkSize = chunkSize;
+    }
+
+    // Метод для массовой загрузки студентов из JSON-массива [{"name": ..., "age": ..., "facultyId": ...}, ...].
+    // Массив читается потоково по одному элементу, сохранение идет пачками по chunkSize строк
+    public BulkImportResult importJson(InputStream in) throws IOException {
+        Import imp = new Import();
+        long row = 0;
+        try (JsonParser parser = objectMapper.createParser(in)) {
+            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                imp.reject(1, "Expected JSON array of students");
+                return imp.finish();
+            }
+            JsonToken token;
+            while ((token = parser.nextToken()) != null && token != JsonToken.END_ARRAY) {
+                row++;
+                if (token != JsonToken.START_OBJECT) {
+                    parser.skipChildren();
+                    imp.malformed(row, "Expected JSON object");
+                    continue;
+                }
+                JsonNode node = parser.readValueAsTree();
+                // Дробные числа не округляются: 20.7 — ошибка строки, а не возраст 20
+                JsonNode age = node.path("age");
+                JsonNode faculty = node.path("facultyId");
+                boolean facultyIsId = faculty.isIntegralNumber() && faculty.canConvertToLong();
+                imp.accept(row, node.path("name").asText(null),
+                        age.isIntegralNumber() && age.canConvertToInt() ? age.intValue() : null,
+                        facultyIsId ? faculty.longValue() : null,
+                        !faculty.isMissingNode() && !faculty.isNull() && !facultyIsId);
+            }
+        } catch (JsonProcessingException e) {
+            // Дальше синтаксической ошибки поток не разобрать: сохраняем прочитанное и сообщаем о строке
+            imp.reject(row + 1, "Malformed JSON: " + e.getOriginalMessage());
+        }
+        return imp.finish();
+    }
+
+    // Метод для массовой загрузки студентов из CSV: name,age[,facultyId], строка заголовка необязательна.
+    // Поля без кавычек, поэтому запятая в имени не поддерживается
+    public BulkImportResult importCsv(InputStream in) throws IOException {
+        Import imp = new Import();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+            String line;
+            long row = 0;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                String[] fields = line.split(",", -1);
+                if (row == 0 && fields[0].trim().equalsIgnoreCase("name")) {
+                    continue;
+                }
+                row++;
+                if (fields.length < 2 || fields.length > 3) {
+                    imp.malformed(row, "Expected columns name,age[,facultyId]");
+                    continue;
+                }
+                Integer age = parseOrNull(fields[1], Integer::valueOf);
+                String facultyField = fields.length == 3 ? fields[2].trim() : "";
+                Long facultyId = facultyField.isEmpty() ? null : parseOrNull(facultyField, Long::valueOf);
+                imp.accept(row, fields[0].trim(), age, facultyId, !facultyField.isEmpty() && facultyId == null);
+            }
+        }
+        return imp.finish();
+    }
+
+    private static <T> T parseOrNull(String value, Function<String, T> parser) {
+        try {
+            return parser.apply(value.trim());
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    // Сохраняет одну пачку: inserts уходят в БД JDBC-батчами (hibernate.jdbc.batch_size),
+    // после записи контекст очищается, чтобы память не росла с размером загрузки
+    private int writeChunk(List<ImportRow> rows, Import imp) {
+        try {
+            List<Long> facultyIds = rows.stream().map(ImportRow::facultyId).filter(Objects::nonNull).distinct().toList();
+            Map<Long, Faculty> faculties = facultyRepository.findAllById(facultyIds).stream()
+                    .collect(Collectors.toMap(Faculty::getId, Function.identity()));
+
+            List<ImportRow> accepted = new ArrayList<>(rows.size());
+            for (ImportRow row : rows) {
+                if (row.facultyId() != null && !faculties.containsKey(row.facultyId())) {
+                    imp.reject(row.row(), "Faculty not found: " + row.facultyId());
+                    continue;
+                }
+                accepted.add(row);
+            }
+            return accepted.isEmpty() ? 0 : saveRows(accepted, faculties, imp);
+        } finally {
+            entityManager.clear();
+        }
+    }
+
+    // Сохраняет строки в отдельной транзакции. Если БД отклоняет пачку, она повторяется по половинам,
+    // пока не останутся отдельные отклоненные строки: остальные сохраняются, а ошибка указывается только для них
+    private int saveRows(List<ImportRow> rows, Map<Long, Faculty> faculties, Import imp) {
+        List<Student> students = new ArrayList<>(rows.size());
+        for (ImportRow row : rows) {
+            Student student = new Student(row.name(), row.age());
+            student.setFaculty(row.facultyId() == null ? null : faculties.get(row.facultyId()));
+            students.add(student);
+        }
+
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                studentRepository.saveAll(students);
+                entityManager.flush();
+                long transactionId = transactionSnapshots.currentTransactionId();
+                students.forEach(student -> eventPublisher.publishEvent(StudentChangedEvent.created(student, transactionId)));
+            });
+            return students.size();
+        } catch (DataAccessException | PersistenceException e) {
+            String cause = NestedExceptionUtils.getMostSpecificCause(e).getMessage();
+            if (rows.size() == 1) {
+                logger.warn("Bulk import row {} rejected by database: {}", rows.get(0).row(), cause);
+                imp.reject(rows.get(0).row(), "Rejected by database: " + cause);
+                return 0;
+            }
+            logger.debug("Bulk import chunk of {} rows failed, retrying in halves: {}", rows.size(), cause);
+            entityManager.clear();
+            int half = rows.size() / 2;
+            return saveRows(rows.subList(0, half), faculties, imp) + saveRows(rows.subList(half, rows.size()), faculties, imp);
+        }
+    }
+
+    private record ImportRow(long row, String name, int age, Long facultyId) {
+    }
+
+    // Состояние одной загрузки: текущая пачка, счетчики и ограниченный список ошибок
+    private class Import {
+
+        private final List<ImportRow> chunk = new ArrayList<>(chunkSize);
+        private final List<BulkImportResult.RowError> errors = new ArrayList<>();
+        private long received;
+        private long imported;
+        private long failed;
+
+        void accept(long row, String name, Integer age, Long facultyId, boolean badFacultyId) {
+            received++;
+            if (name == null || name.isBlank()) {
+                reject(row, "Name is required");
+            } else if (age == null || age <= 0) {
+                reject(row, "Age must be a positive integer");
+            } else if (badFacultyId) {
+                reject(row, "Faculty id must be a number");
+            } else {
+                chunk.add(new ImportRow(row, name.trim(), age, facultyId));
+                if (chunk.size() >= chunkSize) {
+                    flush();
+                }
+            }
+        }
+
+        void malformed(long row, String message) {
+            received++;
+            reject(row, message);
+        }
+
+        void reject(long row, String message) {
+            failed++;
+            if (errors.size() < BulkImportResult.MAX_ERRORS) {
+                errors.add(new BulkImportResult.RowError(row, message));
+            }
+        }
+
+        void flush() {
+            if (!chunk.isEmpty()) {
+                imported += writeChunk(chunk, this);
+                chunk.clear();
+            }
+        }
+
+        BulkImportResult finish() {
+            flush();
+            logger.debug("Bulk import finished: received = {}, imported = {}, failed = {}", received, imported, failed);
+            return new BulkImportResult(received, imported, failed, List.copyOf(errors), failed > errors.size());
+        }
+    }
+}
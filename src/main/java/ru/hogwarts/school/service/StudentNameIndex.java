@@ -0,0 +1,300 @@
+package ru.hogwarts.school.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import ru.hogwarts.school.event.StudentChangedEvent;
+import ru.hogwarts.school.event.TransactionSnapshot;
+import ru.hogwarts.school.repository.StudentRepository;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// Префиксный индекс имен студентов в памяти: сжатое префиксное дерево (radix trie) по именам без учета регистра.
+// Поддерживается инкрементально после коммита изменений и периодически перестраивается из БД
+@Component
+public class StudentNameIndex {
+
+    private static final Logger logger = LoggerFactory.getLogger(StudentNameIndex.class);
+
+    private final StudentRepository studentRepository;
+    private final TransactionSnapshots transactionSnapshots;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    // Одна перестройка за раз
+    private final Lock rebuildLock = new ReentrantLock();
+
+    private Node root = new Node("");
+    // Снимок, с которым прочитаны имена последней перестройки
+    private TransactionSnapshot base;
+    // События, пришедшие во время перестройки
+    private List<StudentChangedEvent> pending;
+    private volatile boolean loaded;
+
+    public StudentNameIndex(StudentRepository studentRepository, TransactionSnapshots transactionSnapshots) {
+        this.studentRepository = studentRepository;
+        this.transactionSnapshots = transactionSnapshots;
+    }
+
+    // Различные имена, начинающиеся с префикса (без учета регистра), в алфавитном порядке, не больше limit
+    public List<String> suggest(String prefix, int limit) {
+        List<String> result = new ArrayList<>();
+        visit(prefix, (name, count) -> {
+            result.add(name);
+            return result.size() < limit;
+        });
+        return result;
+    }
+
+    // Все имена, начинающиеся с префикса, с повторами (по одному на студента)
+    public List<String> namesStartingWith(String prefix) {
+        List<String> result = new ArrayList<>();
+        visit(prefix, (name, count) -> {
+            for (int i = 0; i < count; i++) {
+                result.add(name);
+            }
+            return true;
+        });
+        return result;
+    }
+
+    // Применяем изменение только после успешного коммита транзакции.
+    // Изменение, уже попавшее в имена последней перестройки, пропускаем
+    @TransactionalEventListener
+    public void onStudentChanged(StudentChangedEvent event) {
+        lock.writeLock().lock();
+        try {
+            if (pending != null) {
+                pending.add(event);
+            }
+            if (base == null || !base.includes(event.transactionId())) {
+                apply(root, event);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Периодическая перестройка из БД исправляет расхождения от изменений в обход сервиса.
+    // Новое дерево строится без блокировки и подменяет старое целиком; события, пришедшие во время перестройки,
+    // применяются к новому дереву, если прочитанные имена их не учли
+    @Scheduled(fixedDelayString = "${students.names.rebuild-interval-ms:600000}")
+    public void rebuild() {
+        rebuildLock.lock();
+        try {
+            setPending(new ArrayList<>());
+            TransactionSnapshots.SnapshotRead<List<String>> read;
+            try {
+                read = transactionSnapshots.read(studentRepository::findAllNames);
+            } catch (RuntimeException e) {
+                setPending(null);
+                throw e;
+            }
+            Node rebuilt = new Node("");
+            for (String name : read.value()) {
+                if (name != null) {
+                    insert(rebuilt, fold(name), name);
+                }
+            }
+            lock.writeLock().lock();
+            try {
+                for (StudentChangedEvent event : pending) {
+                    if (!read.snapshot().includes(event.transactionId())) {
+                        apply(rebuilt, event);
+                    }
+                }
+                root = rebuilt;
+                base = read.snapshot();
+                pending = null;
+            } finally {
+                lock.writeLock().unlock();
+            }
+            loaded = true;
+            logger.debug("Student name index rebuilt: {} names", read.value().size());
+        } finally {
+            rebuildLock.unlock();
+        }
+    }
+
+    private static void apply(Node root, StudentChangedEvent event) {
+        String before = event.before() != null ? event.before().name() : null;
+        String after = event.after() != null ? event.after().name() : null;
+        if (before != null && before.equals(after)) {
+            return;
+        }
+        if (before != null) {
+            remove(root, fold(before), before);
+        }
+        if (after != null) {
+            insert(root, fold(after), after);
+        }
+    }
+
+    private void setPending(List<StudentChangedEvent> events) {
+        lock.writeLock().lock();
+        try {
+            pending = events;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void ensureLoaded() {
+        if (!loaded) {
+            rebuild();
+        }
+    }
+
+    // Приведение к единому регистру: через верхний регистр, чтобы совпадали, например, "ß" и "SS"
+    static String fold(String name) {
+        return name.toUpperCase(Locale.ROOT).toLowerCase(Locale.ROOT);
+    }
+
+    private void visit(String prefix, NameVisitor visitor) {
+        ensureLoaded();
+        String key = fold(prefix == null ? "" : prefix);
+        lock.readLock().lock();
+        try {
+            Node node = root;
+            int i = 0;
+            while (i < key.length()) {
+                Node child = node.children.get(key.charAt(i));
+                if (child == null) {
+                    return;
+                }
+                int n = Math.min(child.label.length(), key.length() - i);
+                if (!child.label.regionMatches(0, key, i, n)) {
+                    return;
+                }
+                i += n;
+                node = child;
+            }
+            collect(node, visitor);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Обход поддерева в порядке ключей; останавливается, когда visitor возвращает false
+    private static boolean collect(Node node, NameVisitor visitor) {
+        if (node.names != null) {
+            for (Map.Entry<String, Integer> entry : node.names.entrySet()) {
+                if (!visitor.accept(entry.getKey(), entry.getValue())) {
+                    return false;
+                }
+            }
+        }
+        for (Node child : node.children.values()) {
+            if (!collect(child, visitor)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static void insert(Node root, String key, String name) {
+        Node node = root;
+        int i = 0;
+        while (i < key.length()) {
+            char c = key.charAt(i);
+            Node child = node.children.get(c);
+            if (child == null) {
+                child = new Node(key.substring(i));
+                node.children.put(c, child);
+                node = child;
+                break;
+            }
+            int common = commonPrefixLength(child.label, key, i);
+            if (common < child.label.length()) {
+                // Разбиваем ребро: общий префикс выносим в промежуточный узел
+                Node middle = new Node(child.label.substring(0, common));
+                child.label = child.label.substring(common);
+                middle.children.put(child.label.charAt(0), child);
+                node.children.put(c, middle);
+                child = middle;
+            }
+            node = child;
+            i += common;
+        }
+        if (node.names == null) {
+            node.names = new TreeMap<>();
+        }
+        node.names.merge(name, 1, Integer::sum);
+    }
+
+    private static void remove(Node root, String key, String name) {
+        Deque<Node> path = new ArrayDeque<>();
+        Node node = root;
+        int i = 0;
+        while (i < key.length()) {
+            Node child = node.children.get(key.charAt(i));
+            if (child == null || !key.startsWith(child.label, i)) {
+                return;
+            }
+            path.push(node);
+            node = child;
+            i += child.label.length();
+        }
+        if (node.names == null || !node.names.containsKey(name)) {
+            return;
+        }
+        if (node.names.merge(name, -1, Integer::sum) > 0) {
+            return;
+        }
+        node.names.remove(name);
+        if (node.names.isEmpty()) {
+            node.names = null;
+        }
+        // Убираем опустевшие узлы и склеиваем узел с единственным потомком, чтобы дерево оставалось сжатым
+        while (!path.isEmpty() && node.names == null) {
+            Node parent = path.pop();
+            if (node.children.size() == 1) {
+                Node only = node.children.firstEntry().getValue();
+                only.label = node.label + only.label;
+                parent.children.put(only.label.charAt(0), only);
+                return;
+            }
+            if (!node.children.isEmpty()) {
+                return;
+            }
+            parent.children.remove(node.label.charAt(0));
+            node = parent;
+        }
+    }
+
+    private static int commonPrefixLength(String label, String key, int offset) {
+        int max = Math.min(label.length(), key.length() - offset);
+        int n = 0;
+        while (n < max && label.charAt(n) == key.charAt(offset + n)) {
+            n++;
+        }
+        return n;
+    }
+
+    @FunctionalInterface
+    private interface NameVisitor {
+        boolean accept(String name, int count);
+    }
+
+    // Узел дерева: метка ребра (часть ключа), потомки по первому символу метки и исходные имена,
+    // которые заканчиваются в этом узле (с количеством студентов)
+    private static final class Node {
+        private String label;
+        private final TreeMap<Character, Node> children = new TreeMap<>();
+        private TreeMap<String, Integer> names;
+
+        private Node(String label) {
+            this.label = label;
+        }
+    }
+}
@@ -4,17 +4,30 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import ru.hogwarts.school.batch.BatchJobRunner;
+import ru.hogwarts.school.batch.IdRange;
+import ru.hogwarts.school.dto.BatchJobStatus;
+import ru.hogwarts.school.dto.CursorPage;
+import ru.hogwarts.school.dto.StudentCount;
+import ru.hogwarts.school.dto.StudentStats;
+import ru.hogwarts.school.event.StudentChangedEvent;
 import ru.hogwarts.school.model.Faculty;
 import ru.hogwarts.school.model.Student;
 import ru.hogwarts.school.repository.AvatarRepository;
 import ru.hogwarts.school.repository.StudentRepository;
 import ru.hogwarts.school.repository.FacultyRepository;
 
-import java.awt.print.Pageable;
+import java.time.Instant;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.stream.Collectors;
 
 @Service
@@ -22,34 +35,58 @@ public class StudentService {
 
     private static final Logger logger = LoggerFactory.getLogger(StudentService.class);
 
+    // Максимальное количество подсказок при автодополнении имен
+    static final int MAX_NAME_SUGGESTIONS = 100;
+
     @Value("${avatars.dir.path}")
     private String avatarsDir;
 
     private final StudentRepository studentRepository;
     private final FacultyRepository facultyRepository;
     private final AvatarRepository avatarRepository;
+    private final StudentAggregates studentAggregates;
+    private final StudentNameIndex studentNameIndex;
+    private final StudentAgeSnapshot studentAgeSnapshot;
+    private final TransactionSnapshots transactionSnapshots;
+    private final ApplicationEventPublisher eventPublisher;
+    private final BatchJobRunner batchJobRunner;
+    private final int batchChunkSize;
+    // Блокировка вывода имен в консоль для упорядоченного режима
+    private final Lock printLock = new ReentrantLock();
 
     @Autowired
-    public StudentService(StudentRepository studentRepository, FacultyRepository facultyRepository, AvatarRepository avatarRepository) {
+    public StudentService(StudentRepository studentRepository, FacultyRepository facultyRepository, AvatarRepository avatarRepository,
+                          StudentAggregates studentAggregates, StudentNameIndex studentNameIndex,
+                          StudentAgeSnapshot studentAgeSnapshot, TransactionSnapshots transactionSnapshots,
+                          ApplicationEventPublisher eventPublisher, BatchJobRunner batchJobRunner,
+                          @Value("${students.batch.chunk-size:1000}") int batchChunkSize) {
         this.studentRepository = studentRepository;
         this.avatarRepository = avatarRepository;
         this.facultyRepository = facultyRepository;
+        this.studentAggregates = studentAggregates;
+        this.studentNameIndex = studentNameIndex;
+        this.studentAgeSnapshot = studentAgeSnapshot;
+        this.transactionSnapshots = transactionSnapshots;
+        this.eventPublisher = eventPublisher;
+        this.batchJobRunner = batchJobRunner;
+        this.batchChunkSize = batchChunkSize;
     }
 
     // Метод для создания нового студента
+    @Transactional
     public Student createStudent(String name, int age) {
-        logger.info("Was invoked method for create student");
         logger.debug("Creating student with name = {}, age = {}", name, age);
 
         Student student = new Student(name, age);
         Student saved = studentRepository.save(student);
+        eventPublisher.publishEvent(StudentChangedEvent.created(saved, transactionSnapshots.currentTransactionId()));
         logger.debug("Student created with id = {}", saved.getId());
         return saved;
     }
 
     // Метод для получения студента по ID
+    @Transactional(readOnly = true)
     public Student getStudent(Long id) {
-        logger.info("Was invoked method for get student by id");
         logger.debug("Fetching student with id = {}", id);
 
         Optional<Student> student = studentRepository.findById(id);
@@ -60,16 +97,19 @@ public class StudentService {
     }
 
     // Метод для обновления информации о студенте
+    @Transactional
     public boolean updateStudent(Long id, String name, int age) {
-        logger.info("Was invoked method for update student");
         logger.debug("Updating student with id = {}, name = {}, age = {}", id, name, age);
 
         Optional<Student> studentOptional = studentRepository.findById(id);
         if (studentOptional.isPresent()) {
             Student student = studentOptional.get();
+            StudentChangedEvent.StudentState before = StudentChangedEvent.StudentState.of(student);
             student.setName(name);
             student.setAge(age);
             studentRepository.save(student);
+            eventPublisher.publishEvent(StudentChangedEvent.updated(id, before, student,
+                    transactionSnapshots.currentTransactionId()));
             logger.debug("Student with id = {} successfully updated", id);
             return true;
         } else {
@@ -79,12 +119,15 @@ public class StudentService {
     }
 
     // Метод для удаления студента по ID
+    @Transactional
     public boolean deleteStudent(Long id) {
-        logger.info("Was invoked method for delete student");
         logger.debug("Trying to delete student with id = {}", id);
 
-        if (studentRepository.existsById(id)) {
-            studentRepository.deleteById(id);
+        Optional<Student> studentOptional = studentRepository.findById(id);
+        if (studentOptional.isPresent()) {
+            studentRepository.delete(studentOptional.get());
+            eventPublisher.publishEvent(StudentChangedEvent.deleted(studentOptional.get(),
+                    transactionSnapshots.currentTransactionId()));
             logger.debug("Student with id = {} successfully deleted", id);
             return true;
         } else {
@@ -94,30 +137,37 @@ public class StudentService {
     }
 
     // Метод для получения всех студентов
+    @Transactional(readOnly = true)
     public List<Student> getAllStudents() {
-        logger.info("Was invoked method for get all students");
         List<Student> students = studentRepository.findAll();
         logger.debug("Found {} students", students.size());
         return students;
     }
 
-    // Метод для поиска студентов по возрасту
-    public List<Student> getStudentsByAge(int age) {
-        logger.info("Was invoked method for get students by age");
-        logger.debug("Filtering students by age = {}", age);
+    // Метод для получения студентов постранично по курсору (id последнего полученного студента)
+    @Transactional(readOnly = true)
+    public CursorPage<Student> getStudentsAfter(long afterId, int limit) {
+        logger.debug("Fetching students after id = {}, limit = {}", afterId, limit);
 
-        List<Student> filtered = studentRepository.findAll()
-                .stream()
-                .filter(student -> student.getAge() == age)
-                .collect(Collectors.toList());
+        int pageSize = CursorPage.normalizeLimit(limit);
+        List<Student> students = studentRepository.findByIdGreaterThanOrderByIdAsc(afterId, Limit.of(pageSize + 1));
+        return CursorPage.of(students, pageSize, Student::getId);
+    }
+
+    // Метод для поиска студентов по возрасту (фильтрация и пагинация на стороне БД)
+    @Transactional(readOnly = true)
+    public List<Student> getStudentsByAge(int age, Pageable pageable) {
+        logger.debug("Fetching students by age = {}, pageable = {}", age, pageable);
+
+        List<Student> students = studentRepository.findByAgeOrderByIdAsc(age, pageable);
 
-        logger.debug("Found {} students with age = {}", filtered.size(), age);
-        return filtered;
+        logger.debug("Found {} students with age = {}", students.size(), age);
+        return students;
     }
 
     // Метод для получения всех студентов, которые в диапазоне по возрасту
+    @Transactional(readOnly = true)
     public List<Student> getStudentsByAgeRange(int minAge, int maxAge) {
-        logger.info("Was invoked method for get students by age range");
         logger.debug("Fetching students with age between {} and {}", minAge, maxAge);
 
         List<Student> students = studentRepository.findByAgeBetween(minAge, maxAge);
@@ -125,9 +175,20 @@ public class StudentService {
         return students;
     }
 
+    // Метод для получения студентов в диапазоне возраста постранично по курсору
+    @Transactional(readOnly = true)
+    public CursorPage<Student> getStudentsByAgeRangeAfter(int minAge, int maxAge, long afterId, int limit) {
+        logger.debug("Fetching students with age between {} and {} after id = {}, limit = {}", minAge, maxAge, afterId, limit);
+
+        int pageSize = CursorPage.normalizeLimit(limit);
+        List<Student> students = studentRepository.findByAgeBetweenAndIdGreaterThanOrderByIdAsc(
+                minAge, maxAge, afterId, Limit.of(pageSize + 1));
+        return CursorPage.of(students, pageSize, Student::getId);
+    }
+
     // Метод для привязки студента к факультету
+    @Transactional
     public Student assignFacultyToStudent(Long studentId, Long facultyId) {
-        logger.info("Was invoked method for assign faculty to student");
         logger.debug("Assigning facultyId = {} to studentId = {}", facultyId, studentId);
 
         Student student = studentRepository.findById(studentId).orElse(null);
@@ -142,15 +203,18 @@ public class StudentService {
             return null;
         }
 
+        StudentChangedEvent.StudentState before = StudentChangedEvent.StudentState.of(student);
         student.setFaculty(faculty);
         Student updatedStudent = studentRepository.save(student);
+        eventPublisher.publishEvent(StudentChangedEvent.updated(studentId, before, updatedStudent,
+                transactionSnapshots.currentTransactionId()));
         logger.debug("Faculty assigned to student. Updated student id = {}", updatedStudent.getId());
         return updatedStudent;
     }
 
     // Метод для получения факультета студента
+    @Transactional(readOnly = true)
     public Faculty getStudentFaculty(Long studentId) {
-        logger.info("Was invoked method for get student faculty");
         logger.debug("Getting faculty for studentId = {}", studentId);
 
         return studentRepository.findFacultyById(studentId)
@@ -162,16 +226,40 @@ public class StudentService {
 
     // Метод для получения количества всех студентов
     public long getTotalStudents() {
-        logger.info("Was invoked method for get total students count");
-        long count = studentRepository.countAllStudents();
+        long count = studentAggregates.getCount();
         logger.debug("Total number of students = {}", count);
         return count;
     }
 
+    // Метод для получения количества студентов выбранным способом с метаданными свежести.
+    // Если статистика по таблице еще не собиралась, оценка заменяется значением счетчика
+    @Transactional(readOnly = true)
+    public StudentCount getStudentCount(StudentCount.Mode mode) {
+        logger.debug("Counting students with mode = {}", mode);
+
+        StudentCount result = switch (mode) {
+            case EXACT -> StudentCount.of(studentRepository.countAllStudents(), mode, Instant.now());
+            case CACHED -> cachedStudentCount();
+            case ESTIMATE -> {
+                StudentRepository.StudentCountEstimate estimate = studentRepository.estimateStudentCount();
+                yield estimate.getEstimate() >= 0
+                        ? StudentCount.of(estimate.getEstimate(), mode, estimate.getAnalyzedAt())
+                        : cachedStudentCount();
+            }
+        };
+        logger.debug("Students count = {}", result);
+        return result;
+    }
+
+    private StudentCount cachedStudentCount() {
+        long count = studentAggregates.getCount();
+        return StudentCount.of(count, StudentCount.Mode.CACHED, Instant.ofEpochMilli(studentAggregates.getLastReconciledAt()));
+    }
+
     // Метод для получения 5 последних студентов
+    @Transactional(readOnly = true)
     public List<Student> getLastFiveStudents() {
-        logger.info("Was invoked method for get last five students");
-        Pageable pageable = (Pageable) PageRequest.of(0, 5);
+        Pageable pageable = PageRequest.of(0, 5);
         List<Student> students = studentRepository.findTop5ByOrderByIdDesc(pageable);
         logger.debug("Retrieved last five students, count = {}", students.size());
         return students;
@@ -179,23 +267,66 @@ public class StudentService {
 
     // Метод для получения всех имен всех студентов, чье имя начинается с буквы А.
     public List<String> getNamesStartingWithA() {
-        return studentRepository.findAll().stream()
-                .map(Student::getName)
-                .filter(name -> name != null && name.toUpperCase().startsWith("А")) // кириллическая "А"
+        return studentNameIndex.namesStartingWith("А").stream() // кириллическая "А"
                 .map(String::toUpperCase)
                 .sorted()
                 .collect(Collectors.toList());
     }
 
-    //Метод для получения среднего возраста студентов с использованием метода findAll
+    // Метод для автодополнения имен студентов по префиксу из индекса в памяти (без обращения к БД)
+    public List<String> getNamesByPrefix(String prefix, int limit) {
+        logger.debug("Fetching names with prefix = {}, limit = {}", prefix, limit);
+
+        List<String> names = studentNameIndex.suggest(prefix, Math.max(1, Math.min(limit, MAX_NAME_SUGGESTIONS)));
+        logger.debug("Found {} names with prefix = {}", names.size(), prefix);
+        return names;
+    }
+
+    // Метод для получения среднего возраста студентов из инкрементально поддерживаемых агрегатов
     public double getAverageAge() {
-        List<Student> students = studentRepository.findAll();
-        if (students.isEmpty()) {
-            return 0.0;
+        double averageAge = studentAggregates.getAverageAge();
+        logger.debug("Average age of students = {}", averageAge);
+        return averageAge;
+    }
+
+    // Метод для получения статистики возрастов (гистограмма, медиана, процентили, разбивка по факультетам)
+    // по колоночному снимку в памяти
+    public StudentStats getStudentStats() {
+        StudentStats stats = studentAgeSnapshot.getStats();
+        logger.debug("Student age stats computed for {} students", stats.count());
+        return stats;
+    }
+
+    // Метод для вывода имен всех студентов в консоль фоновым заданием по диапазонам id, по batchChunkSize студентов в части.
+    // ordered = false — части выводятся параллельно и имена разных частей перемешиваются;
+    // ordered = true — каждая часть выводится целиком под общей блокировкой вывода
+    public BatchJobStatus printStudentNames(boolean ordered) {
+        logger.debug("Starting print student names job, ordered = {}", ordered);
+        if (batchChunkSize <= 0) {
+            throw new IllegalArgumentException("Chunk size must be positive: " + batchChunkSize);
         }
-        return students.stream()
-                .mapToInt(Student::getAge)
-                .average()
-                .orElse(0.0);
+        List<IdRange> chunks = studentRepository.findIdChunks(batchChunkSize).stream()
+                .map(bounds -> new IdRange(bounds.getMinId(), bounds.getMaxId()))
+                .toList();
+        String name = ordered ? "print-student-names-synchronized" : "print-student-names-parallel";
+        return batchJobRunner.submit(name, chunks, range -> {
+            List<String> names = studentRepository.findNamesByIdBetween(range.from(), range.to());
+            if (ordered) {
+                printLock.lock();
+                try {
+                    names.forEach(System.out::println);
+                } finally {
+                    printLock.unlock();
+                }
+            } else {
+                names.forEach(System.out::println);
+            }
+            return names.size();
+        });
+    }
+
+    // Метод для получения состояния задания вывода имен
+    public Optional<BatchJobStatus> getBatchJob(long jobId) {
+        return batchJobRunner.find(jobId);
     }
 }
@@ -0,0 +1,69 @@
+package ru.hogwarts.school.service;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.hogwarts.school.datasource.DataSourceRouting;
+import ru.hogwarts.school.event.TransactionSnapshot;
+
+import java.util.function.Supplier;
+
+// Согласование структур в памяти с БД. События изменений несут id своей транзакции, перестройка читает данные
+// вместе со снимком — так при перестройке видно, какие события уже учтены в прочитанных данных, а какие нет
+@Component
+public class TransactionSnapshots {
+
+    private static final String CURRENT_TRANSACTION_ID = "SELECT CAST(CAST(pg_current_xact_id() AS text) AS bigint)";
+    private static final String REPEATABLE_READ = "SET TRANSACTION ISOLATION LEVEL REPEATABLE READ";
+    private static final String CURRENT_SNAPSHOT = "SELECT CAST(pg_current_snapshot() AS text)";
+
+    private final JdbcTemplate jdbcTemplate;
+    // Отдельная транзакция с одним снимком на все запросы (REPEATABLE READ)
+    private final TransactionTemplate snapshotTemplate;
+
+    public TransactionSnapshots(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.snapshotTemplate = new TransactionTemplate(transactionManager);
+        snapshotTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        snapshotTemplate.setReadOnly(true);
+    }
+
+    // Id текущей транзакции. Запрашивается у БД один раз на транзакцию
+    public long currentTransactionId() {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return jdbcTemplate.queryForObject(CURRENT_TRANSACTION_ID, Long.class);
+        }
+        for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+            if (synchronization instanceof TransactionIdHolder holder) {
+                return holder.transactionId;
+            }
+        }
+        long transactionId = jdbcTemplate.queryForObject(CURRENT_TRANSACTION_ID, Long.class);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionIdHolder(transactionId));
+        return transactionId;
+    }
+
+    // Выполняет чтение в отдельной транзакции и возвращает результат вместе со снимком, с которым он прочитан.
+    // Читаем с основного сервера: id транзакций в событиях выданы им, а снимок реплики с ними не сравнить
+    public <T> SnapshotRead<T> read(Supplier<T> query) {
+        return DataSourceRouting.onPrimary(() -> snapshotTemplate.execute(status -> {
+            // Уровень изоляции задаем первой командой транзакции, а не в шаблоне: с освобождением соединения
+            // после транзакции (профиль replica) HibernateJpaDialect не поддерживает свой уровень изоляции
+            jdbcTemplate.execute(REPEATABLE_READ);
+            // Первый запрос фиксирует снимок транзакции, остальные читают с ним же
+            TransactionSnapshot snapshot = TransactionSnapshot.parse(jdbcTemplate.queryForObject(CURRENT_SNAPSHOT, String.class));
+            return new SnapshotRead<>(snapshot, query.get());
+        }));
+    }
+
+    public record SnapshotRead<T>(TransactionSnapshot snapshot, T value) {
+    }
+
+    // Id транзакции хранится в ее синхронизации: синхронизации приостанавливаются вместе с транзакцией (REQUIRES_NEW)
+    private record TransactionIdHolder(long transactionId) implements TransactionSynchronization {
+    }
+}
@@ -0,0 +1,34 @@
+package ru.hogwarts.school.storage;
+
+import org.springframework.core.io.Resource;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+
+// Хранилище содержимого аватарок, адресуемое по SHA-256 содержимого.
+// Реализация выбирается свойством avatars.storage.type (filesystem | database)
+public interface AvatarStorage {
+
+    // Сохраняет содержимое потока, если его еще нет, и возвращает его хэш и размер.
+    // Повторное сохранение обновляет время сохранения (см. findStoredBefore).
+    // Поток читается один раз и целиком в память не загружается
+    StoredContent save(InputStream content) throws IOException;
+
+    // Возвращает содержимое по хэшу
+    Optional<Resource> load(String hash) throws IOException;
+
+    // Сохраняет производный вариант содержимого (например, миниатюру "128.png") рядом с исходным
+    void saveVariant(String hash, String variant, byte[] content) throws IOException;
+
+    // Возвращает производный вариант содержимого, если он уже создан
+    Optional<Resource> loadVariant(String hash, String variant) throws IOException;
+
+    // Хэши исходного содержимого, которое последний раз сохраняли раньше storedBefore, — кандидаты на очистку
+    List<String> findStoredBefore(Instant storedBefore) throws IOException;
+
+    // Удаляет содержимое вместе с вариантами, если его не сохраняли повторно начиная с storedBefore; true — удалено
+    boolean delete(String hash, Instant storedBefore) throws IOException;
+}
@@ -0,0 +1,11 @@
+package ru.hogwarts.school.storage;
+
+import java.io.IOException;
+
+// Загружаемая аватарка превышает avatars.max-size
+public class AvatarTooLargeException extends IOException {
+
+    public AvatarTooLargeException(long maxSize) {
+        super("Avatar exceeds maximum size of " + maxSize + " bytes");
+    }
+}
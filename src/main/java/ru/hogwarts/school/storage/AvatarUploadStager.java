@@ -0,0 +1,115 @@
+package ru.hogwarts.school.storage;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.util.HexFormat;
+
+// Потоковая запись загружаемой аватарки во временный файл: содержимое идет из канала в канал через
+// FileChannel.transferFrom, хэш и размер считаются на лету, поэтому память не зависит от размера файла
+@Component
+public class AvatarUploadStager {
+
+    // Сколько байт передаем за один вызов transferFrom
+    private static final long TRANSFER_CHUNK = 64 * 1024;
+
+    private final long maxSize;
+
+    public AvatarUploadStager(@Value("${avatars.max-size:5MB}") DataSize maxSize) {
+        this.maxSize = maxSize.toBytes();
+    }
+
+    // Записывает поток во временный файл в каталоге dir. Вызывающий отвечает за перенос или удаление файла
+    public StagedUpload stage(InputStream content, Path dir) throws IOException {
+        Files.createDirectories(dir);
+        Path temp = Files.createTempFile(dir, "upload", ".tmp");
+        HashingChannel source = new HashingChannel(Channels.newChannel(content), maxSize);
+        try (FileChannel target = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+            long position = 0;
+            long transferred;
+            while ((transferred = target.transferFrom(source, position, TRANSFER_CHUNK)) > 0 || !source.isEof()) {
+                position += transferred;
+            }
+            target.force(false);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+        return new StagedUpload(temp, source.hash(), source.size());
+    }
+
+    // Временный файл с уже посчитанными хэшем и размером; close() удаляет файл, если его не перенесли
+    public record StagedUpload(Path file, String hash, long size) implements AutoCloseable {
+
+        @Override
+        public void close() throws IOException {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    // Канал-обертка: считает SHA-256 и размер прочитанных байт и обрывает чтение при превышении лимита
+    private static final class HashingChannel implements ReadableByteChannel {
+
+        private final ReadableByteChannel delegate;
+        private final MessageDigest digest = ContentHash.newDigest();
+        private final long maxSize;
+        private long size;
+        private boolean eof;
+
+        private HashingChannel(ReadableByteChannel delegate, long maxSize) {
+            this.delegate = delegate;
+            this.maxSize = maxSize;
+        }
+
+        @Override
+        public int read(ByteBuffer dst) throws IOException {
+            int start = dst.position();
+            int read = delegate.read(dst);
+            if (read < 0) {
+                eof = true;
+                return read;
+            }
+            size += read;
+            if (size > maxSize) {
+                throw new AvatarTooLargeException(maxSize);
+            }
+            ByteBuffer chunk = dst.duplicate();
+            chunk.position(start).limit(start + read);
+            digest.update(chunk);
+            return read;
+        }
+
+        private boolean isEof() {
+            return eof;
+        }
+
+        private String hash() {
+            return HexFormat.of().formatHex(digest.digest());
+        }
+
+        private long size() {
+            return size;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return delegate.isOpen();
+        }
+
+        @Override
+        public void close() throws IOException {
+            delegate.close();
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package ru.hogwarts.school.storage;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.Resource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import ru.hogwarts.school.repository.AvatarContentRepository;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+
+// Хранение аватарок в таблице avatar_content
+@Component
+@ConditionalOnProperty(name = "avatars.storage.type", havingValue = "database")
+public class DatabaseAvatarStorage implements AvatarStorage {
+
+    private static final String INSERT_IF_ABSENT =
+            "INSERT INTO avatar_content (hash, data, size) VALUES (?, ?, ?) ON CONFLICT (hash) DO NOTHING";
+    // Повторная загрузка обновляет stored_at и блокирует строку до коммита: очистка ее не удалит
+    private static final String INSERT_OR_TOUCH =
+            "INSERT INTO avatar_content (hash, data, size) VALUES (?, ?, ?) ON CONFLICT (hash) DO UPDATE SET stored_at = now()";
+
+    private final AvatarContentRepository avatarContentRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final AvatarUploadStager uploadStager;
+    private final Path stagingDir = Paths.get(System.getProperty("java.io.tmpdir"), "hogwarts-avatar-staging");
+
+    public DatabaseAvatarStorage(AvatarContentRepository avatarContentRepository, JdbcTemplate jdbcTemplate,
+                                 AvatarUploadStager uploadStager) {
+        this.avatarContentRepository = avatarContentRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.uploadStager = uploadStager;
+    }
+
+    @Override
+    @Transactional
+    public StoredContent save(InputStream content) throws IOException {
+        // Хэш нужен до вставки, поэтому сначала пишем поток во временный файл,
+        // а затем передаем его драйверу потоком (setBinaryStream), не загружая в память
+        try (AvatarUploadStager.StagedUpload upload = uploadStager.stage(content, stagingDir);
+             InputStream staged = Files.newInputStream(upload.file())) {
+            jdbcTemplate.update(INSERT_OR_TOUCH, ps -> {
+                ps.setString(1, upload.hash());
+                ps.setBinaryStream(2, staged, upload.size());
+                ps.setLong(3, upload.size());
+            });
+            return new StoredContent(upload.hash(), upload.size());
+        }
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Optional<Resource> load(String hash) {
+        return avatarContentRepository.findById(hash)
+                .map(content -> new ByteArrayResource(content.getData()));
+    }
+
+    // Варианты хранятся в той же таблице под ключом <хэш>_<вариант>
+    @Override
+    @Transactional
+    public void saveVariant(String hash, String variant, byte[] content) {
+        jdbcTemplate.update(INSERT_IF_ABSENT, variantKey(hash, variant), content, content.length);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Optional<Resource> loadVariant(String hash, String variant) {
+        return load(variantKey(hash, variant));
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<String> findStoredBefore(Instant storedBefore) {
+        return avatarContentRepository.findHashesStoredBefore(storedBefore);
+    }
+
+    @Override
+    @Transactional
+    public boolean delete(String hash, Instant storedBefore) {
+        if (avatarContentRepository.deleteIfStoredBefore(hash, storedBefore) == 0) {
+            return false;
+        }
+        avatarContentRepository.deleteVariants(hash);
+        return true;
+    }
+
+    private static String variantKey(String hash, String variant) {
+        return hash + "_" + variant;
+    }
+}
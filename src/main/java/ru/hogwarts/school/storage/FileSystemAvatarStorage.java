@@ -0,0 +1,162 @@
+package ru.hogwarts.school.storage;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import ru.hogwarts.school.model.AvatarContent;
+import ru.hogwarts.school.repository.AvatarContentRepository;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
+
+// Хранение аватарок на диске: <avatars.dir.path>/<первые 2 символа хэша>/<хэш>.
+// Содержимое, которого нет на диске, ищется в avatar_content (туда миграция перенесла аватарки из БД)
+// и при первом чтении переносится на диск, а строка удаляется. Время сохранения для очистки — время изменения файла
+@Component
+@ConditionalOnProperty(name = "avatars.storage.type", havingValue = "filesystem", matchIfMissing = true)
+public class FileSystemAvatarStorage implements AvatarStorage {
+
+    private static final Logger logger = LoggerFactory.getLogger(FileSystemAvatarStorage.class);
+
+    private static final String STAGING_DIR = ".staging";
+    private static final int HASH_LENGTH = 64;
+
+    private final Path root;
+    private final AvatarUploadStager uploadStager;
+    private final AvatarContentRepository avatarContentRepository;
+
+    public FileSystemAvatarStorage(@Value("${avatars.dir.path}") String avatarsDir, AvatarUploadStager uploadStager,
+                                   AvatarContentRepository avatarContentRepository) {
+        this.root = Paths.get(avatarsDir);
+        this.uploadStager = uploadStager;
+        this.avatarContentRepository = avatarContentRepository;
+    }
+
+    @Override
+    public StoredContent save(InputStream content) throws IOException {
+        // Временный файл создается внутри корня хранилища, чтобы переименование было атомарным
+        try (AvatarUploadStager.StagedUpload upload = uploadStager.stage(content, root.resolve(STAGING_DIR))) {
+            Path target = resolve(upload.hash());
+            if (Files.exists(target)) {
+                Files.setLastModifiedTime(target, FileTime.from(Instant.now()));
+                logger.debug("Avatar content {} already stored, skipping write", upload.hash());
+            } else {
+                Files.createDirectories(target.getParent());
+                Files.move(upload.file(), target, StandardCopyOption.ATOMIC_MOVE);
+                logger.debug("Avatar content {} stored to {}", upload.hash(), target);
+            }
+            return new StoredContent(upload.hash(), upload.size());
+        }
+    }
+
+    @Override
+    public Optional<Resource> load(String hash) throws IOException {
+        Path path = resolve(hash);
+        if (Files.exists(path)) {
+            return Optional.of(new FileSystemResource(path));
+        }
+        Optional<AvatarContent> migrated = avatarContentRepository.findById(hash);
+        if (migrated.isEmpty()) {
+            return Optional.empty();
+        }
+        write(path, migrated.get().getData());
+        // Копия на диске записана атомарно — строка в БД больше не нужна
+        avatarContentRepository.deleteMoved(hash);
+        logger.info("Avatar content {} moved from the database to {}", hash, path);
+        return Optional.of(new FileSystemResource(path));
+    }
+
+    @Override
+    public void saveVariant(String hash, String variant, byte[] content) throws IOException {
+        Path target = resolveVariant(hash, variant);
+        write(target, content);
+        logger.debug("Avatar variant {} of {} stored to {}", variant, hash, target);
+    }
+
+    @Override
+    public Optional<Resource> loadVariant(String hash, String variant) {
+        Path path = resolveVariant(hash, variant);
+        return Files.exists(path) ? Optional.of(new FileSystemResource(path)) : Optional.empty();
+    }
+
+    // Файлы исходного содержимого лежат на втором уровне и называются хэшем; варианты и временные файлы пропускаем.
+    // Сюда же попадает содержимое, перенесенное миграцией в avatar_content и еще не прочитанное
+    @Override
+    public List<String> findStoredBefore(Instant storedBefore) throws IOException {
+        Set<String> hashes = new TreeSet<>(avatarContentRepository.findHashesStoredBefore(storedBefore));
+        if (Files.isDirectory(root)) {
+            try (DirectoryStream<Path> dirs = Files.newDirectoryStream(root,
+                    dir -> Files.isDirectory(dir) && dir.getFileName().toString().length() == 2)) {
+                for (Path dir : dirs) {
+                    try (DirectoryStream<Path> files = Files.newDirectoryStream(dir)) {
+                        for (Path file : files) {
+                            String name = file.getFileName().toString();
+                            if (name.length() == HASH_LENGTH && name.indexOf('_') < 0
+                                    && Files.getLastModifiedTime(file).toInstant().isBefore(storedBefore)) {
+                                hashes.add(name);
+                            }
+                        }
+                    }
+                }
+            }
+        }
+        return new ArrayList<>(hashes);
+    }
+
+    @Override
+    @Transactional
+    public boolean delete(String hash, Instant storedBefore) throws IOException {
+        Path path = resolve(hash);
+        if (Files.exists(path) && !Files.getLastModifiedTime(path).toInstant().isBefore(storedBefore)) {
+            return false;
+        }
+        boolean deleted = avatarContentRepository.deleteIfStoredBefore(hash, storedBefore) > 0;
+        deleted |= Files.deleteIfExists(path);
+        if (deleted && Files.isDirectory(path.getParent())) {
+            try (DirectoryStream<Path> variants = Files.newDirectoryStream(path.getParent(), hash + "_*")) {
+                for (Path variant : variants) {
+                    Files.deleteIfExists(variant);
+                }
+            }
+        }
+        return deleted;
+    }
+
+    // Запись через временный файл: читатели видят либо старое, либо полное новое содержимое
+    private static void write(Path target, byte[] content) throws IOException {
+        Files.createDirectories(target.getParent());
+        Path temp = Files.createTempFile(target.getParent(), target.getFileName().toString(), ".tmp");
+        try {
+            Files.write(temp, content);
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    // Варианты лежат рядом с исходным файлом: <хэш>_<вариант>
+    private Path resolveVariant(String hash, String variant) {
+        return resolve(hash).resolveSibling(hash + "_" + variant);
+    }
+
+    private Path resolve(String hash) {
+        return root.resolve(hash.substring(0, 2)).resolve(hash);
+    }
+}
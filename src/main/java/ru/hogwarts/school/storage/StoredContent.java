@@ -0,0 +1,5 @@
+package ru.hogwarts.school.storage;
+
+// Результат сохранения содержимого: адрес (SHA-256) и размер в байтах
+public record StoredContent(String hash, long size) {
+}
@@ -0,0 +1,75 @@
+package ru.hogwarts.school.tracing;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Consumer;
+
+// Трассировка вызовов методов сервисов вместо логирования каждого вызова: выборка вызовов по доле sampleRate
+// складывается в кольцевой буфер, а на диск их пишет TraceFileAppender в фоне.
+// Включение и доля выборки меняются на лету через /actuator/tracing
+@Component
+public class InvocationTracer {
+
+    private final TraceBuffer buffer;
+    private volatile boolean enabled;
+    private volatile double sampleRate;
+
+    public InvocationTracer(@Value("${tracing.enabled:true}") boolean enabled,
+                            @Value("${tracing.sample-rate:0.1}") double sampleRate,
+                            @Value("${tracing.buffer-size:8192}") int bufferSize) {
+        this.buffer = new TraceBuffer(bufferSize);
+        this.enabled = enabled;
+        setSampleRate(sampleRate);
+    }
+
+    // Нужно ли записать текущий вызов: на пути запроса только чтение volatile и случайное число
+    public boolean sample() {
+        if (!enabled) {
+            return false;
+        }
+        double rate = sampleRate;
+        return rate >= 1.0 || (rate > 0.0 && ThreadLocalRandom.current().nextDouble() < rate);
+    }
+
+    public void record(TraceRecord record) {
+        buffer.add(record);
+    }
+
+    int drain(Consumer<TraceRecord> consumer, int max) {
+        return buffer.drain(consumer, max);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public double getSampleRate() {
+        return sampleRate;
+    }
+
+    public void setSampleRate(double sampleRate) {
+        if (!(sampleRate >= 0.0 && sampleRate <= 1.0)) {
+            throw new IllegalArgumentException("Sample rate must be between 0 and 1: " + sampleRate);
+        }
+        this.sampleRate = sampleRate;
+    }
+
+    // Сколько вызовов записано в буфер и сколько из них потеряно из-за переполнения
+    public long getRecorded() {
+        return buffer.added();
+    }
+
+    public long getDropped() {
+        return buffer.dropped();
+    }
+
+    public int getBufferSize() {
+        return buffer.capacity();
+    }
+}
@@ -0,0 +1,79 @@
+package ru.hogwarts.school.tracing;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+
+// Кольцевой буфер записей без блокировок для пишущих потоков: каждый писатель захватывает номер ячейки
+// атомарным инкрементом и публикует запись вместе с этим номером. При переполнении старые записи
+// перезаписываются, а читатель пропускает их и учитывает как потерянные. Номер в ячейке только растет:
+// запись писателя, задержавшегося дольше круга, не затирает более новую и теряется. Читатель один (drain)
+class TraceBuffer {
+
+    private final AtomicReferenceArray<Slot> slots;
+    private final int capacity;
+    private final int mask;
+    private final AtomicLong head = new AtomicLong();
+
+    // Номер следующей записи для читателя и число потерянных записей — меняются только под drain
+    private long tail;
+    private long dropped;
+
+    TraceBuffer(int capacity) {
+        // Размер — степень двойки, чтобы номер ячейки считался маской
+        this.capacity = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        this.mask = this.capacity - 1;
+        this.slots = new AtomicReferenceArray<>(this.capacity);
+    }
+
+    void add(TraceRecord record) {
+        long sequence = head.getAndIncrement();
+        slots.accumulateAndGet((int) (sequence & mask), new Slot(sequence, record),
+                (current, published) -> current != null && current.sequence > published.sequence ? current : published);
+    }
+
+    // Передает читателю опубликованные записи по порядку, не больше max. Останавливается на ячейке,
+    // которую писатель уже захватил, но еще не заполнил, если только писатели не ушли от нее дальше круга
+    synchronized int drain(Consumer<TraceRecord> consumer, int max) {
+        int drained = 0;
+        while (drained < max) {
+            Slot slot = slots.get((int) (tail & mask));
+            if (slot == null || slot.sequence < tail) {
+                // Запись tail уже вне окна буфера: ждать ее бессмысленно, учитываем как потерянную
+                long oldest = head.get() - capacity;
+                if (oldest > tail) {
+                    dropped += oldest - tail;
+                    tail = oldest;
+                    continue;
+                }
+                break;
+            }
+            if (slot.sequence > tail) {
+                // Писатели обогнали читателя на круг: переходим к самой старой записи, которая еще может быть в буфере
+                long next = Math.max(tail + 1, head.get() - capacity);
+                dropped += next - tail;
+                tail = next;
+                continue;
+            }
+            consumer.accept(slot.record);
+            tail++;
+            drained++;
+        }
+        return drained;
+    }
+
+    long added() {
+        return head.get();
+    }
+
+    synchronized long dropped() {
+        return dropped;
+    }
+
+    int capacity() {
+        return capacity;
+    }
+
+    private record Slot(long sequence, TraceRecord record) {
+    }
+}
@@ -0,0 +1,121 @@
+package ru.hogwarts.school.tracing;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Фоновая запись трассировки в файл: по расписанию забирает записи из буфера InvocationTracer
+// и дописывает их в файл пачками через FileChannel — одна операция записи на пачку, без участия потоков запросов
+@Component
+public class TraceFileAppender {
+
+    private static final Logger logger = LoggerFactory.getLogger(TraceFileAppender.class);
+
+    // Сколько записей собираем в одну операцию записи
+    static final int BATCH_SIZE = 4096;
+
+    private final InvocationTracer tracer;
+    private final Path file;
+    // Запись в файл идет под блокировкой — ReentrantLock, чтобы не закреплять виртуальный поток планировщика
+    private final Lock writeLock = new ReentrantLock();
+    private FileChannel channel;
+    private volatile long written;
+
+    public TraceFileAppender(InvocationTracer tracer, @Value("${tracing.file:logs/trace.log}") Path file) {
+        this.tracer = tracer;
+        this.file = file;
+    }
+
+    @Scheduled(fixedDelayString = "${tracing.flush-interval-ms:1000}")
+    public void flush() {
+        writeLock.lock();
+        try {
+            StringBuilder batch = new StringBuilder();
+            int drained;
+            while ((drained = tracer.drain(record -> append(batch, record), BATCH_SIZE)) > 0) {
+                try {
+                    write(batch);
+                    written += drained;
+                } catch (IOException e) {
+                    // Пачка теряется, файл переоткроем при следующей записи
+                    logger.warn("Failed to write {} trace records to {}", drained, file, e);
+                    closeChannel();
+                }
+                batch.setLength(0);
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    // Сколько записей записано в файл
+    public long getWritten() {
+        return written;
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    @PreDestroy
+    public void close() {
+        writeLock.lock();
+        try {
+            flush();
+            closeChannel();
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    // Строка трассировки: время начала, поток, Класс.метод, длительность в микросекундах и результат
+    private static void append(StringBuilder batch, TraceRecord record) {
+        batch.append(Instant.ofEpochMilli(record.startedAt())).append(' ')
+                .append(record.thread()).append(' ')
+                .append(record.className()).append('.').append(record.method()).append(' ')
+                .append(record.durationNanos() / 1000).append("us ")
+                .append(record.exception() == null ? "ok" : record.exception())
+                .append('\n');
+    }
+
+    private void write(CharSequence batch) throws IOException {
+        if (channel == null) {
+            Path parent = file.toAbsolutePath().getParent();
+            if (parent != null) {
+                Files.createDirectories(parent);
+            }
+            channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        }
+        ByteBuffer bytes = StandardCharsets.UTF_8.encode(CharBuffer.wrap(batch));
+        while (bytes.hasRemaining()) {
+            channel.write(bytes);
+        }
+    }
+
+    private void closeChannel() {
+        if (channel == null) {
+            return;
+        }
+        try {
+            channel.close();
+        } catch (IOException e) {
+            logger.warn("Failed to close trace file {}", file, e);
+        }
+        channel = null;
+    }
+}
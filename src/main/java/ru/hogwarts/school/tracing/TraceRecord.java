@@ -0,0 +1,7 @@
+package ru.hogwarts.school.tracing;
+
+// Один вызов метода сервиса: время начала (мс от эпохи), поток, класс и метод, длительность
+// и тип исключения (null — вызов завершился успешно)
+public record TraceRecord(long startedAt, String thread, String className, String method, long durationNanos,
+                          String exception) {
+}
@@ -0,0 +1,39 @@
+package ru.hogwarts.school.tracing;
+
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.springframework.stereotype.Component;
+
+// Записывает выбранные InvocationTracer вызовы публичных методов сервисов; остальные вызовы проходят без затрат
+@Aspect
+@Component
+public class TracingAspect {
+
+    private final InvocationTracer tracer;
+
+    public TracingAspect(InvocationTracer tracer) {
+        this.tracer = tracer;
+    }
+
+    @Around("within(@org.springframework.stereotype.Service ru.hogwarts.school.service..*) && execution(public * *(..))")
+    public Object trace(ProceedingJoinPoint joinPoint) throws Throwable {
+        if (!tracer.sample()) {
+            return joinPoint.proceed();
+        }
+        long startedAt = System.currentTimeMillis();
+        long start = System.nanoTime();
+        String exception = null;
+        try {
+            return joinPoint.proceed();
+        } catch (Throwable e) {
+            exception = e.getClass().getSimpleName();
+            throw e;
+        } finally {
+            MethodSignature signature = (MethodSignature) joinPoint.getSignature();
+            tracer.record(new TraceRecord(startedAt, Thread.currentThread().getName(),
+                    signature.getDeclaringType().getSimpleName(), signature.getName(), System.nanoTime() - start, exception));
+        }
+    }
+}
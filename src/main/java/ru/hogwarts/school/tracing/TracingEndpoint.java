@@ -0,0 +1,49 @@
+package ru.hogwarts.school.tracing;
+
+import org.springframework.boot.actuate.endpoint.Access;
+import org.springframework.boot.actuate.endpoint.InvalidEndpointRequestException;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+
+// Управление трассировкой на лету: GET /actuator/tracing — состояние и счетчики,
+// POST /actuator/tracing {"enabled": false, "sampleRate": 0.5} — включение и доля выборки (любое из полей).
+// По умолчанию доступно только чтение: POST включается явно management.endpoint.tracing.access=unrestricted
+@Component
+@Endpoint(id = "tracing", defaultAccess = Access.READ_ONLY)
+public class TracingEndpoint {
+
+    private final InvocationTracer tracer;
+    private final TraceFileAppender appender;
+
+    public TracingEndpoint(InvocationTracer tracer, TraceFileAppender appender) {
+        this.tracer = tracer;
+        this.appender = appender;
+    }
+
+    @ReadOperation
+    public TracingStatus status() {
+        return new TracingStatus(tracer.isEnabled(), tracer.getSampleRate(), tracer.getBufferSize(),
+                tracer.getRecorded(), tracer.getDropped(), appender.getWritten(), appender.getFile().toString());
+    }
+
+    @WriteOperation
+    public TracingStatus configure(@Nullable Boolean enabled, @Nullable Double sampleRate) {
+        if (sampleRate != null) {
+            if (!(sampleRate >= 0.0 && sampleRate <= 1.0)) {
+                throw new InvalidEndpointRequestException("Sample rate must be between 0 and 1", "Invalid sampleRate");
+            }
+            tracer.setSampleRate(sampleRate);
+        }
+        if (enabled != null) {
+            tracer.setEnabled(enabled);
+        }
+        return status();
+    }
+
+    public record TracingStatus(boolean enabled, double sampleRate, int bufferSize, long recorded, long dropped,
+                                long written, String file) {
+    }
+}
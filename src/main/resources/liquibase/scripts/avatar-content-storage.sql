@@ -0,0 +1,20 @@
+-- liquibase formatted sql
+
+-- changeset azatsepina:5
+CREATE TABLE avatar_content (
+    hash VARCHAR(64) PRIMARY KEY,
+    data BYTEA NOT NULL,
+    size BIGINT NOT NULL
+);
+
+ALTER TABLE avatar ADD COLUMN content_hash VARCHAR(64);
+
+-- Переносим уже загруженные картинки из large object в avatar.data в avatar_content (одна копия на хэш).
+-- При хранении на диске FileSystemAvatarStorage читает отсюда содержимое, которого еще нет на диске, и переносит его.
+-- Старые avatar.data и avatar.file_path удаляются после проверки переноса (avatar-legacy-cleanup.sql)
+INSERT INTO avatar_content (hash, data, size)
+SELECT encode(sha256(content), 'hex'), content, length(content)
+FROM (SELECT lo_get(data) AS content FROM avatar WHERE data IS NOT NULL) AS legacy
+ON CONFLICT (hash) DO NOTHING;
+
+UPDATE avatar SET content_hash = encode(sha256(lo_get(data)), 'hex') WHERE data IS NOT NULL;
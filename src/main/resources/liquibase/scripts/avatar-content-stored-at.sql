@@ -0,0 +1,7 @@
+-- liquibase formatted sql
+
+-- changeset azatsepina:10
+-- Время последнего сохранения содержимого: очистка удаляет содержимое без ссылок, только если его давно не сохраняли
+ALTER TABLE avatar_content ADD COLUMN stored_at TIMESTAMP(6) WITH TIME ZONE NOT NULL DEFAULT now();
+-- Поиск ссылок на содержимое при очистке
+CREATE INDEX idx_avatar_content_hash ON avatar (content_hash);
@@ -0,0 +1,5 @@
+-- liquibase formatted sql
+
+-- changeset azatsepina:7
+-- Ключ производных вариантов (миниатюр) — <хэш>_<вариант>
+ALTER TABLE avatar_content ALTER COLUMN hash TYPE VARCHAR(80);
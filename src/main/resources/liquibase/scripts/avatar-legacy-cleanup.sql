@@ -0,0 +1,33 @@
+-- liquibase formatted sql
+
+-- changeset azatsepina:11
+-- Пути старых файлов аватарок (avatar.file_path): файлы удаляет очистка хранилища (AvatarContentSweeper)
+CREATE TABLE avatar_legacy_file (
+    path TEXT PRIMARY KEY
+);
+
+-- changeset azatsepina:12 splitStatements:false
+-- Удаление исходных копий аватарок, перенесенных в avatar_content (changeset 5): large object в avatar.data
+-- и файла avatar.file_path. Сначала проверяем перенос: у каждой аватарки с avatar.data content_hash совпадает
+-- с хэшем large object и есть строка avatar_content; иначе изменение падает и ничего не удаляет.
+-- Проверка и удаление — один блок DO. Если старых колонок уже нет, удалять нечего
+-- preconditions onFail:MARK_RAN
+-- precondition-sql-check expectedResult:2 SELECT COUNT(*) FROM information_schema.columns WHERE table_schema = current_schema() AND table_name = 'avatar' AND column_name IN ('data', 'file_path')
+DO $$
+BEGIN
+    IF EXISTS (SELECT 1 FROM avatar a
+               WHERE a.data IS NOT NULL
+                 AND (a.content_hash IS DISTINCT FROM encode(sha256(lo_get(a.data)), 'hex')
+                      OR NOT EXISTS (SELECT 1 FROM avatar_content c WHERE c.hash = a.content_hash))) THEN
+        RAISE EXCEPTION 'Legacy avatar content is not copied to avatar_content, keeping avatar.data and avatar.file_path';
+    END IF;
+
+    INSERT INTO avatar_legacy_file (path)
+    SELECT DISTINCT file_path FROM avatar WHERE file_path IS NOT NULL
+    ON CONFLICT (path) DO NOTHING;
+
+    PERFORM lo_unlink(data) FROM avatar WHERE data IS NOT NULL;
+
+    ALTER TABLE avatar DROP COLUMN data;
+    ALTER TABLE avatar DROP COLUMN file_path;
+END $$;
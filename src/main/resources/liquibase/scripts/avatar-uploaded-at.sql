@@ -0,0 +1,5 @@
+-- liquibase formatted sql
+
+-- changeset azatsepina:6
+ALTER TABLE avatar ADD COLUMN uploaded_at TIMESTAMP(6) WITH TIME ZONE;
+UPDATE avatar SET uploaded_at = date_trunc('second', now()) WHERE uploaded_at IS NULL;
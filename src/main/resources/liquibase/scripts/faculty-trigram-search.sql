@@ -0,0 +1,11 @@
+-- liquibase formatted sql
+
+-- changeset azatsepina:8
+-- Индексы для faculties.search.type=trigram. Без pg_trgm (расширение не установлено на сервере или у пользователя
+-- нет прав его создать) изменение пропускается и повторяется при следующем запуске, приложение стартует,
+-- а поиск нужно переключить на faculties.search.type=ngram
+-- preconditions onFail:CONTINUE
+-- precondition-sql-check expectedResult:1 SELECT CASE WHEN EXISTS (SELECT 1 FROM pg_extension WHERE extname = 'pg_trgm') THEN 1 WHEN EXISTS (SELECT 1 FROM pg_available_extension_versions v WHERE v.name = 'pg_trgm' AND (v.trusted OR (SELECT rolsuper FROM pg_roles WHERE rolname = current_user))) AND has_database_privilege(current_database(), 'CREATE') THEN 1 ELSE 0 END
+CREATE EXTENSION IF NOT EXISTS pg_trgm;
+CREATE INDEX idx_faculty_name_trgm ON faculty USING gin (lower(name) gin_trgm_ops);
+CREATE INDEX idx_faculty_color_trgm ON faculty USING gin (lower(color) gin_trgm_ops);
@@ -0,0 +1,4 @@
+-- liquibase formatted sql
+
+-- changeset azatsepina:9
+CREATE INDEX idx_faculty_color_lower ON faculty (lower(color));
@@ -0,0 +1,4 @@
+-- liquibase formatted sql
+
+-- changeset azatsepina:3
+CREATE INDEX idx_student_age ON student(age, id);
@@ -0,0 +1,4 @@
+-- liquibase formatted sql
+
+-- changeset azatsepina:4
+CREATE INDEX idx_student_faculty ON student(faculty_id, id);
@@ -0,0 +1,52 @@
+#!/usr/bin/env bash
+# Локальная потоковая реплика основной БД для профиля replica (порт 5433, данные — target/replica).
+# Запуск из корня проекта от имени владельца кластера PostgreSQL:
+#   src/replica-local.sh start   — снять копию основного сервера и запустить реплику
+#   src/replica-local.sh pause   — приостановить применение WAL (реплика начнет отставать и выйдет из ротации)
+#   src/replica-local.sh resume  — продолжить применение WAL
+#   src/replica-local.sh stop    — остановить реплику
+# На основном сервере пользователю нужна роль REPLICATION и разрешение replication в pg_hba.conf
+set -euo pipefail
+
+PG_BIN=${PG_BIN:-}
+PRIMARY_HOST=${PRIMARY_HOST:-localhost}
+PRIMARY_PORT=${PRIMARY_PORT:-5432}
+REPLICA_PORT=${REPLICA_PORT:-5433}
+REPLICA_USER=${REPLICA_USER:-postgres}
+DATA_DIR=${DATA_DIR:-target/replica}
+
+pg() {
+  "${PG_BIN:+$PG_BIN/}$1" "${@:2}"
+}
+
+replica_sql() {
+  pg psql -h localhost -p "$REPLICA_PORT" -U "$REPLICA_USER" -d postgres -Atc "$1"
+}
+
+case "${1:-}" in
+  start)
+    if [ ! -f "$DATA_DIR/PG_VERSION" ]; then
+      mkdir -p "$(dirname "$DATA_DIR")"
+      # -R создает standby.signal и primary_conninfo: после запуска реплика сама подключается к основному серверу
+      pg pg_basebackup -h "$PRIMARY_HOST" -p "$PRIMARY_PORT" -U "$REPLICA_USER" -D "$DATA_DIR" -R -X stream -c fast
+      chmod 700 "$DATA_DIR"
+    fi
+    pg pg_ctl -D "$DATA_DIR" -o "-p $REPLICA_PORT -k /tmp" -l "$DATA_DIR.log" -w start
+    echo "Replica is running on port $REPLICA_PORT, in recovery: $(replica_sql 'SELECT pg_is_in_recovery()')"
+    ;;
+  pause)
+    replica_sql "SELECT pg_wal_replay_pause()" > /dev/null
+    echo "WAL replay paused"
+    ;;
+  resume)
+    replica_sql "SELECT pg_wal_replay_resume()" > /dev/null
+    echo "WAL replay resumed"
+    ;;
+  stop)
+    pg pg_ctl -D "$DATA_DIR" -m fast -w stop
+    ;;
+  *)
+    echo "Usage: $0 start|pause|resume|stop" >&2
+    exit 1
+    ;;
+esac
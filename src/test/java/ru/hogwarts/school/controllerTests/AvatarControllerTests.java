@@ -0,0 +1,294 @@
+package ru.hogwarts.school.controllerTests;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.util.LinkedMultiValueMap;
+import org.springframework.util.MultiValueMap;
+import ru.hogwarts.school.model.Avatar;
+import ru.hogwarts.school.model.Student;
+import ru.hogwarts.school.repository.StudentRepository;
+import ru.hogwarts.school.service.AvatarContentSweeper;
+import ru.hogwarts.school.service.AvatarThumbnailService;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = {"avatars.dir.path=${java.io.tmpdir}/hogwarts-avatars", "avatars.max-size=64KB",
+                "avatars.thumbnail.max-pixels=250000",
+                "spring.jpa.properties.hibernate.session_factory.statement_inspector=ru.hogwarts.school.controllerTests.SqlStatementCapture"})
+public class AvatarControllerTests {
+
+    private static final byte[] IMAGE = {(byte) 0x89, 'P', 'N', 'G', 1, 2, 3, 4, 5, 6, 7, 8};
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    @Autowired
+    private StudentRepository studentRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private AvatarContentSweeper avatarContentSweeper;
+
+    @Autowired
+    private AvatarThumbnailService thumbnailService;
+
+    @Test
+    public void testUploadSameImageIsStoredOnce() {
+        Student student1 = studentRepository.save(new Student("Аватар Первый " + System.nanoTime(), 20));
+        Student student2 = studentRepository.save(new Student("Аватар Второй " + System.nanoTime(), 21));
+
+        Avatar avatar1 = upload(student1.getId(), IMAGE).getBody();
+        Avatar avatar2 = upload(student2.getId(), IMAGE).getBody();
+
+        // Одинаковое содержимое имеет одинаковый адрес в хранилище
+        assertNotNull(avatar1);
+        assertNotNull(avatar2);
+        assertNotEquals(avatar1.getId(), avatar2.getId());
+        assertEquals(avatar1.getContentHash(), avatar2.getContentHash());
+        assertEquals(IMAGE.length, avatar1.getFileSize());
+    }
+
+    @Test
+    public void testGetAvatarContent() {
+        Student student = studentRepository.save(new Student("Аватар Третий " + System.nanoTime(), 22));
+        Avatar avatar = upload(student.getId(), IMAGE).getBody();
+
+        ResponseEntity<byte[]> byId = restTemplate.getForEntity("/avatar/" + avatar.getId(), byte[].class);
+        assertEquals(HttpStatus.OK, byId.getStatusCode());
+        assertEquals(MediaType.IMAGE_PNG, byId.getHeaders().getContentType());
+        assertArrayEquals(IMAGE, byId.getBody());
+
+        ResponseEntity<byte[]> byStudent = restTemplate.getForEntity("/avatar/file/" + student.getId(), byte[].class);
+        assertEquals(HttpStatus.OK, byStudent.getStatusCode());
+        assertArrayEquals(IMAGE, byStudent.getBody());
+    }
+
+    @Test
+    public void testMigratedContentIsServedAndMovedToDisk() throws IOException {
+        Student student = studentRepository.save(new Student("Аватар Перенесенный " + System.nanoTime(), 22));
+        byte[] content = (new String(IMAGE, StandardCharsets.ISO_8859_1) + System.nanoTime()).getBytes(StandardCharsets.ISO_8859_1);
+        Avatar avatar = upload(student.getId(), content).getBody();
+
+        // Как после миграции: содержимое есть только в avatar_content, на диске его нет
+        Path file = Paths.get(System.getProperty("java.io.tmpdir"), "hogwarts-avatars",
+                avatar.getContentHash().substring(0, 2), avatar.getContentHash());
+        Files.delete(file);
+        jdbcTemplate.update("INSERT INTO avatar_content (hash, data, size) VALUES (?, ?, ?)",
+                avatar.getContentHash(), content, content.length);
+
+        ResponseEntity<byte[]> response = restTemplate.getForEntity("/avatar/" + avatar.getId(), byte[].class);
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertArrayEquals(content, response.getBody());
+        assertArrayEquals(content, Files.readAllBytes(file));
+        // После переноса на диск копия в БД удаляется
+        assertEquals(0, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM avatar_content WHERE hash = ?",
+                Integer.class, avatar.getContentHash()));
+    }
+
+    @Test
+    public void testReplacedContentIsSwept() throws IOException {
+        Student student = studentRepository.save(new Student("Аватар Замененный " + System.nanoTime(), 23));
+        byte[] replacedContent = (new String(IMAGE, StandardCharsets.ISO_8859_1) + "old" + System.nanoTime())
+                .getBytes(StandardCharsets.ISO_8859_1);
+        byte[] currentContent = (new String(IMAGE, StandardCharsets.ISO_8859_1) + "new" + System.nanoTime())
+                .getBytes(StandardCharsets.ISO_8859_1);
+        Path replaced = contentFile(upload(student.getId(), replacedContent).getBody().getContentHash());
+        Path current = contentFile(upload(student.getId(), currentContent).getBody().getContentHash());
+        Path replacedVariant = replaced.resolveSibling(replaced.getFileName() + "_32.png");
+        Files.write(replacedVariant, IMAGE);
+
+        // Свежее содержимое без ссылок не удаляется: его загрузка могла еще не закоммититься
+        avatarContentSweeper.sweep();
+        assertTrue(Files.exists(replaced));
+
+        FileTime old = FileTime.from(Instant.now().minus(Duration.ofDays(1)));
+        Files.setLastModifiedTime(replaced, old);
+        Files.setLastModifiedTime(current, old);
+        avatarContentSweeper.sweep();
+
+        assertFalse(Files.exists(replaced));
+        assertFalse(Files.exists(replacedVariant));
+        assertTrue(Files.exists(current));
+    }
+
+    @Test
+    public void testConditionalGetReturnsNotModified() {
+        Student student = studentRepository.save(new Student("Аватар Кэш " + System.nanoTime(), 24));
+        Avatar avatar = upload(student.getId(), IMAGE).getBody();
+
+        ResponseEntity<byte[]> first = restTemplate.getForEntity("/avatar/" + avatar.getId(), byte[].class);
+        assertEquals(HttpStatus.OK, first.getStatusCode());
+        assertEquals("\"" + avatar.getContentHash() + "\"", first.getHeaders().getETag());
+        assertNotNull(first.getHeaders().getCacheControl());
+
+        // Повторный запрос с ETag не передает тело
+        HttpHeaders headers = new HttpHeaders();
+        headers.setIfNoneMatch(first.getHeaders().getETag());
+        ResponseEntity<byte[]> second = restTemplate.exchange(
+                "/avatar/" + avatar.getId(), HttpMethod.GET, new HttpEntity<>(headers), byte[].class);
+        assertEquals(HttpStatus.NOT_MODIFIED, second.getStatusCode());
+        assertNull(second.getBody());
+    }
+
+    @Test
+    public void testRangeRequestReturnsPartialContent() {
+        Student student = studentRepository.save(new Student("Аватар Диапазон " + System.nanoTime(), 25));
+        Avatar avatar = upload(student.getId(), IMAGE).getBody();
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.set(HttpHeaders.RANGE, "bytes=2-5");
+        ResponseEntity<byte[]> response = restTemplate.exchange(
+                "/avatar/file/" + student.getId(), HttpMethod.GET, new HttpEntity<>(headers), byte[].class);
+
+        assertEquals(HttpStatus.PARTIAL_CONTENT, response.getStatusCode());
+        assertArrayEquals(new byte[]{'N', 'G', 1, 2}, response.getBody());
+    }
+
+    @Test
+    public void testThumbnailIsServedOnceGenerated() throws Exception {
+        Student student = studentRepository.save(new Student("Аватар Миниатюра " + System.nanoTime(), 26));
+        Avatar avatar = upload(student.getId(), png(300, 200)).getBody();
+
+        // Миниатюра генерируется в фоне; до этого отдается оригинал
+        BufferedImage thumbnail = null;
+        for (int attempt = 0; attempt < 50 && thumbnail == null; attempt++) {
+            ResponseEntity<byte[]> response = restTemplate.getForEntity(
+                    "/avatar/" + avatar.getId() + "?size=32", byte[].class);
+            assertEquals(HttpStatus.OK, response.getStatusCode());
+            BufferedImage image = ImageIO.read(new ByteArrayInputStream(response.getBody()));
+            if (image.getWidth() == 32) {
+                thumbnail = image;
+            } else {
+                assertEquals(300, image.getWidth());
+                Thread.sleep(100);
+            }
+        }
+
+        assertNotNull(thumbnail);
+        assertEquals(32, thumbnail.getHeight());
+    }
+
+    @Test
+    public void testThumbnailIsSkippedOverPixelLimit() throws Exception {
+        Student student = studentRepository.save(new Student("Аватар Огромный " + System.nanoTime(), 27));
+        Avatar avatar = upload(student.getId(), png(600, 500)).getBody();
+
+        // 300 000 пикселей больше предела: картинка не декодируется, отдается только оригинал
+        for (int attempt = 0; attempt < 10; attempt++) {
+            ResponseEntity<byte[]> response = restTemplate.getForEntity(
+                    "/avatar/" + avatar.getId() + "?size=32", byte[].class);
+            assertEquals(HttpStatus.OK, response.getStatusCode());
+            assertEquals(600, ImageIO.read(new ByteArrayInputStream(response.getBody())).getWidth());
+            Thread.sleep(100);
+        }
+
+        // Неудача запомнена: следующие запросы миниатюры генерацию заново не запускают
+        assertTrue(thumbnailService.isFailed(avatar.getContentHash()));
+        long attempts = thumbnailService.getAttempts();
+        for (int attempt = 0; attempt < 10; attempt++) {
+            assertEquals(HttpStatus.OK, restTemplate.getForEntity(
+                    "/avatar/" + avatar.getId() + "?size=128", byte[].class).getStatusCode());
+        }
+        assertEquals(attempts, thumbnailService.getAttempts());
+    }
+
+    @Test
+    public void testListingDoesNotSelectContent() {
+        Student student = studentRepository.save(new Student("Аватар Список " + System.nanoTime(), 27));
+        Avatar avatar = upload(student.getId(), IMAGE).getBody();
+
+        SqlStatementCapture.clear();
+        ResponseEntity<String> response = restTemplate.getForEntity("/avatar?page=0&size=10", String.class);
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertTrue(response.getBody().contains("\"url\":\"/avatar/"));
+        assertFalse(response.getBody().contains("\"student\""));
+
+        // Список читает только метаданные: ни содержимого, ни студентов с факультетами
+        List<String> listingSql = SqlStatementCapture.statements().stream()
+                .filter(sql -> sql.contains(" avatar "))
+                .toList();
+        assertFalse(listingSql.isEmpty());
+        for (String sql : listingSql) {
+            assertFalse(sql.contains("avatar_content"), sql);
+            assertFalse(sql.contains("data"), sql);
+            assertFalse(sql.contains("join"), sql);
+        }
+        assertTrue(SqlStatementCapture.statements().stream().noneMatch(sql -> sql.contains(" student ")));
+    }
+
+    @Test
+    public void testUploadLargerThanLimitIsRejected() {
+        Student student = studentRepository.save(new Student("Аватар Большой " + System.nanoTime(), 23));
+
+        ResponseEntity<Avatar> response = restTemplate.exchange("/avatar/upload", HttpMethod.POST,
+                multipart(student.getId(), new byte[64 * 1024 + 1]), Avatar.class);
+
+        assertEquals(HttpStatus.PAYLOAD_TOO_LARGE, response.getStatusCode());
+    }
+
+    private static byte[] png(int width, int height) throws IOException {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", out);
+        return out.toByteArray();
+    }
+
+    private static Path contentFile(String hash) {
+        return Paths.get(System.getProperty("java.io.tmpdir"), "hogwarts-avatars", hash.substring(0, 2), hash);
+    }
+
+    private ResponseEntity<Avatar> upload(Long studentId, byte[] content) {
+        ResponseEntity<Avatar> response = restTemplate.exchange(
+                "/avatar/upload", HttpMethod.POST, multipart(studentId, content), Avatar.class);
+        assertEquals(HttpStatus.CREATED, response.getStatusCode());
+        return response;
+    }
+
+    private HttpEntity<MultiValueMap<String, Object>> multipart(Long studentId, byte[] content) {
+        HttpHeaders fileHeaders = new HttpHeaders();
+        fileHeaders.setContentType(MediaType.IMAGE_PNG);
+        ByteArrayResource file = new ByteArrayResource(content) {
+            @Override
+            public String getFilename() {
+                return "avatar.png";
+            }
+        };
+
+        MultiValueMap<String, Object> body = new LinkedMultiValueMap<>();
+        body.add("file", new HttpEntity<>(file, fileHeaders));
+        body.add("studentId", studentId);
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.MULTIPART_FORM_DATA);
+
+        return new HttpEntity<>(body, headers);
+    }
+}
@@ -0,0 +1,53 @@
+package ru.hogwarts.school.controllerTests;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import ru.hogwarts.school.batch.BatchJobRunner;
+import ru.hogwarts.school.batch.IdRange;
+import ru.hogwarts.school.dto.BatchJobStatus;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Учет частей фонового задания без контекста Spring
+public class BatchJobRunnerTests {
+
+    private final BatchJobRunner runner = new BatchJobRunner(2, 1, 10);
+
+    @AfterEach
+    public void tearDown() {
+        runner.shutdown();
+    }
+
+    @Test
+    public void testErrorInChunkFinishesJobAndFreesSlot() throws InterruptedException {
+        List<IdRange> chunks = List.of(new IdRange(1, 10), new IdRange(20, 30), new IdRange(40, 40));
+        BatchJobStatus job = runner.submit("failing", chunks, range -> {
+            if (range.from() == 20) {
+                throw new AssertionError("broken chunk");
+            }
+            return 1;
+        });
+
+        job = awaitFinished(job.id());
+        assertEquals(BatchJobStatus.State.FAILED, job.state());
+        assertEquals(3, job.completedChunks());
+        assertEquals(1, job.failedChunks());
+        assertEquals(2, job.processedItems());
+        assertEquals("AssertionError: broken chunk", job.chunks().get(1).error());
+
+        // Лимит в одно активное задание: следующее задание принимается, значит место освободилось
+        BatchJobStatus next = runner.submit("next", List.of(new IdRange(1, 1)), range -> 1);
+        assertEquals(BatchJobStatus.State.COMPLETED, awaitFinished(next.id()).state());
+    }
+
+    private BatchJobStatus awaitFinished(long jobId) throws InterruptedException {
+        BatchJobStatus job = runner.find(jobId).orElseThrow();
+        for (int i = 0; i < 100 && job.state() == BatchJobStatus.State.RUNNING; i++) {
+            Thread.sleep(50);
+            job = runner.find(jobId).orElseThrow();
+        }
+        return job;
+    }
+}
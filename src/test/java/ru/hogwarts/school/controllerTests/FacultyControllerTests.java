@@ -1,5 +1,6 @@
 package ru.hogwarts.school.controllerTests;
 
+import com.fasterxml.jackson.databind.JsonNode;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
@@ -10,6 +11,7 @@ import org.springframework.http.HttpMethod;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.http.HttpEntity;
+import ru.hogwarts.school.dto.FacultyAssignmentRequest;
 import ru.hogwarts.school.model.Faculty;
 import ru.hogwarts.school.model.Student;
 
@@ -100,6 +102,53 @@ public class FacultyControllerTests {
         assertEquals("синий", retrievedFaculty.getColor());
     }
 
+    @Test
+    public void testFacultyCacheIsInvalidatedOnUpdate() {
+        Faculty faculty = restTemplate.exchange(
+                "/faculty", HttpMethod.POST, new HttpEntity<>(new Faculty("Кэш", "белый")), Faculty.class).getBody();
+
+        // Первый запрос кладет факультет в кэш, второй берет его из кэша
+        restTemplate.getForEntity("/faculty/" + faculty.getId(), Faculty.class);
+        double hitsBefore = cacheHits();
+        Faculty cached = restTemplate.getForEntity("/faculty/" + faculty.getId(), Faculty.class).getBody();
+        assertEquals("белый", cached.getColor());
+        assertTrue(cacheHits() > hitsBefore);
+
+        // Обновление вытесняет запись, следующий запрос видит новые данные
+        restTemplate.exchange("/faculty/" + faculty.getId(), HttpMethod.PUT,
+                new HttpEntity<>(new Faculty("Кэш", "черный")), Faculty.class);
+        Faculty reloaded = restTemplate.getForEntity("/faculty/" + faculty.getId(), Faculty.class).getBody();
+        assertEquals("черный", reloaded.getColor());
+    }
+
+    @Test
+    public void testFacultiesByColorAreCachedPerNormalizedColor() {
+        String color = "лазурный" + System.nanoTime();
+        Faculty faculty = restTemplate.postForObject("/faculty", new Faculty("Равенкло", color), Faculty.class);
+
+        // Цвет в разном регистре попадает в одну запись кэша
+        restTemplate.getForObject("/faculty/color/" + color.toUpperCase(), Faculty[].class);
+        double hitsBefore = cacheHits("facultiesByColor");
+        Faculty[] cached = restTemplate.getForObject("/faculty/color/" + color, Faculty[].class);
+        assertEquals(1, cached.length);
+        assertTrue(cacheHits("facultiesByColor") > hitsBefore);
+
+        // Изменение факультета вытесняет кэш по цветам
+        restTemplate.exchange("/faculty/" + faculty.getId(), HttpMethod.PUT,
+                new HttpEntity<>(new Faculty("Равенкло", "бронзовый")), Faculty.class);
+        assertEquals(0, restTemplate.getForObject("/faculty/color/" + color, Faculty[].class).length);
+    }
+
+    private double cacheHits() {
+        return cacheHits("faculties");
+    }
+
+    private double cacheHits(String cache) {
+        JsonNode metric = restTemplate.getForObject(
+                "/actuator/metrics/cache.gets?tag=cache:" + cache + "&tag=result:hit", JsonNode.class);
+        return metric.get("measurements").get(0).get("value").asDouble();
+    }
+
     @Test
     public void testDeleteFaculty() {
         // Создаем факультет для теста
@@ -185,5 +234,102 @@ public class FacultyControllerTests {
         assertTrue(students.stream().anyMatch(s -> s.getName().equals("Иван Иванов")));
         assertTrue(students.stream().anyMatch(s -> s.getName().equals("Иван Фролов")));
     }
-}
 
+    @Test
+    public void testAssignStudentsByIds() {
+        Faculty faculty = restTemplate.postForObject("/faculty", new Faculty("Распределение", "синий"), Faculty.class);
+        Student student1 = restTemplate.postForObject("/students", new Student("Перевод Первый", 11), Student.class);
+        Student student2 = restTemplate.postForObject("/students", new Student("Перевод Второй", 11), Student.class);
+
+        ResponseEntity<Integer> response = restTemplate.exchange(
+                "/faculty/" + faculty.getId() + "/students", HttpMethod.PUT,
+                new HttpEntity<>(new FacultyAssignmentRequest(List.of(student1.getId(), student2.getId()), null, null)),
+                Integer.class);
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(2, response.getBody());
+        Student reloaded = restTemplate.getForObject("/students/" + student2.getId(), Student.class);
+        assertEquals(faculty.getId(), reloaded.getFaculty().getId());
+    }
+
+    @Test
+    public void testAssignStudentsByAgeRange() {
+        Faculty faculty = restTemplate.postForObject("/faculty", new Faculty("Распределение", "синий"), Faculty.class);
+        Student student = restTemplate.postForObject("/students", new Student("Перевод по возрасту", 97), Student.class);
+
+        ResponseEntity<Integer> response = restTemplate.exchange(
+                "/faculty/" + faculty.getId() + "/students", HttpMethod.PUT,
+                new HttpEntity<>(new FacultyAssignmentRequest(null, 97, 98)), Integer.class);
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertTrue(response.getBody() >= 1);
+        Student reloaded = restTemplate.getForObject("/students/" + student.getId(), Student.class);
+        assertEquals(faculty.getId(), reloaded.getFaculty().getId());
+    }
+
+    @Test
+    public void testAssignStudentsRejectsInvalidRequest() {
+        Faculty faculty = restTemplate.postForObject("/faculty", new Faculty("Распределение", "синий"), Faculty.class);
+
+        // Не задан ни список, ни диапазон
+        ResponseEntity<Integer> invalid = restTemplate.exchange(
+                "/faculty/" + faculty.getId() + "/students", HttpMethod.PUT,
+                new HttpEntity<>(new FacultyAssignmentRequest(null, null, null)), Integer.class);
+        assertEquals(HttpStatus.BAD_REQUEST, invalid.getStatusCode());
+
+        // Несуществующий факультет
+        ResponseEntity<Integer> missing = restTemplate.exchange(
+                "/faculty/-1/students", HttpMethod.PUT,
+                new HttpEntity<>(new FacultyAssignmentRequest(null, 10, 20)), Integer.class);
+        assertEquals(HttpStatus.NOT_FOUND, missing.getStatusCode());
+    }
+
+    @Test
+    public void testSearchFacultiesRankedAndPaged() {
+        String term = "Зельеварение" + System.nanoTime();
+        Faculty longer = restTemplate.postForObject("/faculty",
+                new Faculty(term + " и защита от темных искусств", "фиолетовый"), Faculty.class);
+        Faculty exact = restTemplate.postForObject("/faculty", new Faculty(term, "фиолетовый"), Faculty.class);
+
+        // Точное совпадение похоже на запрос больше, поэтому идет первым, несмотря на больший id
+        List<Faculty> firstPage = restTemplate.exchange("/faculty/search?searchTerm=" + term.toLowerCase() + "&size=1",
+                HttpMethod.GET, null, new ParameterizedTypeReference<List<Faculty>>() {}).getBody();
+        List<Faculty> secondPage = restTemplate.exchange("/faculty/search?searchTerm=" + term.toLowerCase() + "&page=1&size=1",
+                HttpMethod.GET, null, new ParameterizedTypeReference<List<Faculty>>() {}).getBody();
+        assertEquals(List.of(exact.getId()), firstPage.stream().map(Faculty::getId).toList());
+        assertEquals(List.of(longer.getId()), secondPage.stream().map(Faculty::getId).toList());
+
+        // Спецсимволы LIKE ищутся буквально
+        String digits = term.substring("Зельеварение".length());
+        List<Faculty> wildcard = restTemplate.exchange("/faculty/search?searchTerm=_" + digits,
+                HttpMethod.GET, null, new ParameterizedTypeReference<List<Faculty>>() {}).getBody();
+        assertTrue(wildcard.isEmpty());
+    }
+
+    @Test
+    public void testLongestFacultyNameFollowsWrites() {
+        String longName = "Д".repeat(240) + System.nanoTime();
+        Faculty faculty = restTemplate.postForObject("/faculty", new Faculty(longName, "серый"), Faculty.class);
+        assertEquals(longName, restTemplate.getForObject("/faculty/longest-name", String.class));
+
+        // После переименования лидера самым длинным становится другое название
+        restTemplate.put("/faculty/" + faculty.getId(), new Faculty("Д", "серый"));
+        assertNotEquals(longName, restTemplate.getForObject("/faculty/longest-name", String.class));
+    }
+
+    @Test
+    public void testFacultyWithMostStudentsFollowsWrites() {
+        Faculty faculty = restTemplate.postForObject("/faculty", new Faculty("Многолюдный", "серый"), Faculty.class);
+        restTemplate.postForObject("/students", new Student("Студент многолюдного", 30), Student.class);
+
+        // Переводим всех студентов на новый факультет одним запросом
+        restTemplate.put("/faculty/" + faculty.getId() + "/students", new FacultyAssignmentRequest(null, 0, 1000));
+        assertEquals(faculty.getId(), restTemplate.getForObject("/faculty/most-students", Faculty.class).getId());
+
+        // Перевод одного студента на другой факультет учитывается инкрементально
+        Faculty other = restTemplate.postForObject("/faculty", new Faculty("Малолюдный", "серый"), Faculty.class);
+        Student student = restTemplate.postForObject("/students", new Student("Новичок", 30), Student.class);
+        restTemplate.put("/students/" + student.getId() + "/faculty/" + other.getId(), null);
+        assertEquals(faculty.getId(), restTemplate.getForObject("/faculty/most-students", Faculty.class).getId());
+    }
+}
@@ -139,7 +139,7 @@ public class FacultyControllerWithMockTest {
     @Test
     public void testSearchFaculties() throws Exception {
         Faculty faculty = new Faculty("Гринвич", "красный");
-        when(facultyService.searchFacultiesByNameOrColor("грин")).thenReturn(List.of(faculty));
+        when(facultyService.searchFacultiesByNameOrColor("грин", 0, 50)).thenReturn(List.of(faculty));
 
         mockMvc.perform(get("/faculty/search")
                         .param("searchTerm", "грин"))
@@ -148,7 +148,7 @@ public class FacultyControllerWithMockTest {
                 .andExpect(jsonPath("$[0].name").value("Гринвич"))
                 .andExpect(jsonPath("$[0].color").value("красный"));
 
-        verify(facultyService, times(1)).searchFacultiesByNameOrColor("грин");
+        verify(facultyService, times(1)).searchFacultiesByNameOrColor("грин", 0, 50);
     }
 
     @Test
@@ -0,0 +1,217 @@
+package ru.hogwarts.school.controllerTests;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.hogwarts.school.dto.StudentStats;
+import ru.hogwarts.school.event.StudentChangedEvent;
+import ru.hogwarts.school.event.StudentsReassignedEvent;
+import ru.hogwarts.school.model.Faculty;
+import ru.hogwarts.school.model.Student;
+import ru.hogwarts.school.repository.FacultyRepository;
+import ru.hogwarts.school.repository.StudentRepository;
+import ru.hogwarts.school.service.FacultyMetrics;
+import ru.hogwarts.school.service.FacultyService;
+import ru.hogwarts.school.service.StudentAgeSnapshot;
+import ru.hogwarts.school.service.StudentAggregates;
+import ru.hogwarts.school.service.StudentNameIndex;
+import ru.hogwarts.school.service.TransactionSnapshots;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Согласованность структур в памяти с БД, когда события изменений приходят во время перестройки или после нее
+@SpringBootTest(properties = {"students.aggregates.reconcile-interval-ms=3600000"})
+public class InMemoryStateConsistencyTests {
+
+    @Autowired
+    private StudentRepository studentRepository;
+
+    @Autowired
+    private StudentAggregates studentAggregates;
+
+    @Autowired
+    private StudentNameIndex studentNameIndex;
+
+    @Autowired
+    private StudentAgeSnapshot studentAgeSnapshot;
+
+    @Autowired
+    private FacultyRepository facultyRepository;
+
+    @Autowired
+    private FacultyMetrics facultyMetrics;
+
+    @Autowired
+    private FacultyService facultyService;
+
+    @Autowired
+    private TransactionSnapshots transactionSnapshots;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Test
+    public void testAggregatesSkipLateEventAlreadyReconciled() {
+        studentAggregates.reconcile();
+        long count = studentAggregates.getCount();
+
+        StudentChangedEvent event = createStudent("Студент Опоздавший", 30, null, null);
+        assertEquals(count + 1, studentAggregates.getCount());
+
+        // Сверка после коммита уже учла студента; повторная доставка события не учитывает его второй раз
+        studentAggregates.reconcile();
+        long reconciled = studentAggregates.getCount();
+        studentAggregates.onStudentChanged(event);
+        assertEquals(reconciled, studentAggregates.getCount());
+    }
+
+    @Test
+    public void testAggregatesKeepCommitMissedBySnapshot() throws Exception {
+        CountDownLatch written = new CountDownLatch(1);
+        CountDownLatch reconciled = new CountDownLatch(1);
+        // Транзакция пишет до сверки, а коммитится после ее запроса: снимок сверки студента не видит
+        CompletableFuture<StudentChangedEvent> writer = CompletableFuture.supplyAsync(
+                () -> createStudent("Студент Параллельный", 31, written, reconciled));
+        assertTrue(written.await(10, TimeUnit.SECONDS));
+        studentAggregates.reconcile();
+        reconciled.countDown();
+        writer.get(10, TimeUnit.SECONDS);
+
+        assertEquals(studentRepository.count(), studentAggregates.getCount());
+    }
+
+    @Test
+    public void testNameIndexSkipsLateEventAlreadyRebuilt() {
+        String name = "Индекс Опоздавший " + System.nanoTime();
+        StudentChangedEvent event = createStudent(name, 30, null, null);
+
+        studentNameIndex.rebuild();
+        studentNameIndex.onStudentChanged(event);
+        assertEquals(List.of(name), studentNameIndex.namesStartingWith(name));
+    }
+
+    @Test
+    public void testNameIndexKeepsCommitMissedByRebuild() throws Exception {
+        String name = "Индекс Параллельный " + System.nanoTime();
+        CountDownLatch written = new CountDownLatch(1);
+        CountDownLatch rebuilt = new CountDownLatch(1);
+        CompletableFuture<StudentChangedEvent> writer = CompletableFuture.supplyAsync(
+                () -> createStudent(name, 31, written, rebuilt));
+        assertTrue(written.await(10, TimeUnit.SECONDS));
+        studentNameIndex.rebuild();
+        rebuilt.countDown();
+        writer.get(10, TimeUnit.SECONDS);
+
+        assertEquals(List.of(name), studentNameIndex.namesStartingWith(name));
+    }
+
+    @Test
+    public void testAgeSnapshotSkipsLateEventAlreadyRebuilt() {
+        StudentChangedEvent created = createStudent("Возраст Опоздавший", 30, null, null);
+        long count = studentAgeSnapshot.getStats().count();
+        // Удаление в обход сервиса: перестройка его учитывает, а повторная доставка старого события не возвращает студента
+        studentRepository.deleteById(created.studentId());
+
+        studentAgeSnapshot.rebuild();
+        studentAgeSnapshot.onStudentChanged(created);
+        assertEquals(count - 1, studentAgeSnapshot.getStats().count());
+    }
+
+    @Test
+    public void testAgeSnapshotRereadsReassignmentMissedByRebuild() throws Exception {
+        Faculty faculty = facultyRepository.save(new Faculty("Факультет Параллельный " + System.nanoTime(), "серый"));
+        Long studentId = createStudent("Возраст Переведенный", 32, null, null).studentId();
+        CountDownLatch written = new CountDownLatch(1);
+        CountDownLatch rebuilt = new CountDownLatch(1);
+        // Перевод коммитится после запроса перестройки: снимок его не видит, и статистика перечитывается
+        CompletableFuture<Void> writer = CompletableFuture.runAsync(() -> new TransactionTemplate(transactionManager).execute(status -> {
+            int updated = studentRepository.assignFacultyByIds(faculty, List.of(studentId));
+            eventPublisher.publishEvent(new StudentsReassignedEvent(faculty.getId(), updated,
+                    transactionSnapshots.currentTransactionId()));
+            written.countDown();
+            await(rebuilt);
+            return null;
+        }));
+        assertTrue(written.await(10, TimeUnit.SECONDS));
+        studentAgeSnapshot.rebuild();
+        rebuilt.countDown();
+        writer.get(10, TimeUnit.SECONDS);
+
+        StudentStats stats = studentAgeSnapshot.getStats();
+        assertTrue(stats.faculties().stream()
+                .anyMatch(f -> faculty.getId().equals(f.facultyId()) && f.count() == 1));
+    }
+
+    @Test
+    public void testFacultyCountsSkipLateEventAlreadyLoaded() {
+        Faculty faculty = facultyRepository.save(new Faculty("Факультет Опоздавший " + System.nanoTime(), "серый"));
+        facultyMetrics.invalidate();
+        StudentChangedEvent event = new TransactionTemplate(transactionManager).execute(status -> {
+            Student student = new Student("Счетчик Опоздавший", 30);
+            student.setFaculty(faculty);
+            studentRepository.saveAndFlush(student);
+            return StudentChangedEvent.created(student, transactionSnapshots.currentTransactionId());
+        });
+
+        // Загрузка счетчиков уже учла студента; событие, доставленное после нее, не учитывает его второй раз
+        assertEquals(1, facultyMetrics.getStudentCount(faculty.getId()));
+        facultyMetrics.onStudentChanged(event);
+        assertEquals(1, facultyMetrics.getStudentCount(faculty.getId()));
+    }
+
+    @Test
+    public void testFacultyCacheNotStaleAfterUpdateRacingRead() throws Exception {
+        Faculty faculty = facultyService.createFaculty("Факультет Кэшированный " + System.nanoTime(), "серый");
+        String renamed = "Факультет Переименованный " + System.nanoTime();
+
+        // Чтение из другого потока между изменением и коммитом видит старую строку и кладет ее в кэш
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            assertTrue(facultyService.updateFaculty(faculty.getId(), renamed, "серый"));
+            try {
+                Faculty read = CompletableFuture.supplyAsync(() -> facultyService.getFaculty(faculty.getId()))
+                        .get(10, TimeUnit.SECONDS);
+                assertEquals(faculty.getName(), read.getName());
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+
+        // Кэш сброшен после коммита, поэтому старая строка в нем не остается
+        assertEquals(renamed, facultyService.getFaculty(faculty.getId()).getName());
+        assertTrue(facultyService.getAllFaculties().stream().anyMatch(f -> renamed.equals(f.getName())));
+    }
+
+    // Создание студента с событием, как в сервисе; written/proceed позволяют задержать коммит
+    private StudentChangedEvent createStudent(String name, int age, CountDownLatch written, CountDownLatch proceed) {
+        return new TransactionTemplate(transactionManager).execute(status -> {
+            Student student = studentRepository.saveAndFlush(new Student(name, age));
+            StudentChangedEvent event = StudentChangedEvent.created(student, transactionSnapshots.currentTransactionId());
+            eventPublisher.publishEvent(event);
+            if (written != null) {
+                written.countDown();
+                await(proceed);
+            }
+            return event;
+        });
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            assertTrue(latch.await(10, TimeUnit.SECONDS));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+}
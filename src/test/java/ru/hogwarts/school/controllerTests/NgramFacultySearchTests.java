@@ -0,0 +1,56 @@
+package ru.hogwarts.school.controllerTests;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.hogwarts.school.model.Faculty;
+import ru.hogwarts.school.search.NgramFacultySearch;
+import ru.hogwarts.school.service.FacultyService;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Индекс триграмм в памяти: обновление по событиям и перестройка после изменений в обход сервиса
+@SpringBootTest(properties = {"faculties.search.type=ngram", "faculties.search.rebuild-interval-ms=3600000"})
+public class NgramFacultySearchTests {
+
+    @Autowired
+    private FacultyService facultyService;
+
+    @Autowired
+    private NgramFacultySearch ngramFacultySearch;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    public void testIndexFollowsFacultyChanges() {
+        String suffix = Long.toString(System.nanoTime(), 36);
+        Faculty faculty = facultyService.createFaculty("Триграммный " + suffix, "лиловый");
+        assertEquals(List.of(faculty.getId()), ids(ngramFacultySearch.search("триграммный " + suffix, 0, 10)));
+
+        facultyService.updateFaculty(faculty.getId(), "Переименованный " + suffix, "лиловый");
+        assertTrue(ngramFacultySearch.search("триграммный " + suffix, 0, 10).isEmpty());
+        assertEquals(List.of(faculty.getId()), ids(ngramFacultySearch.search("переименованный " + suffix, 0, 10)));
+    }
+
+    @Test
+    public void testRebuildPicksUpChangesOutsideService() {
+        String suffix = Long.toString(System.nanoTime(), 36);
+        Faculty faculty = facultyService.createFaculty("Прямой " + suffix, "бурый");
+        ngramFacultySearch.search("прямой " + suffix, 0, 10);
+
+        // Изменение в обход сервиса события не публикует — его исправляет перестройка
+        jdbcTemplate.update("UPDATE faculty SET name = ? WHERE id = ?", "Обходной " + suffix, faculty.getId());
+        assertTrue(ngramFacultySearch.search("обходной " + suffix, 0, 10).isEmpty());
+
+        ngramFacultySearch.rebuild();
+        assertEquals(List.of(faculty.getId()), ids(ngramFacultySearch.search("обходной " + suffix, 0, 10)));
+    }
+
+    private static List<Long> ids(List<Faculty> faculties) {
+        return faculties.stream().map(Faculty::getId).toList();
+    }
+}
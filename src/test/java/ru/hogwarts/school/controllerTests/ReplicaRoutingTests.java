@@ -0,0 +1,153 @@
+package ru.hogwarts.school.controllerTests;
+
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.DefaultTransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.hogwarts.school.datasource.DataSourceRouting;
+import ru.hogwarts.school.datasource.ReplicaRoutingDataSource;
+import ru.hogwarts.school.model.Student;
+import ru.hogwarts.school.service.TransactionSnapshots;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Чтение с реплик. Реплика здесь — та же БД, но в отдельном пуле read-only соединений с ApplicationName,
+// по которому видно, куда ушел запрос; вторая реплика недоступна
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = {"replicas.urls=" + ReplicaRoutingTests.REPLICA_URL + ",jdbc:postgresql://localhost:1/hogwarts",
+                "replicas.check-interval-ms=3600000"})
+public class ReplicaRoutingTests {
+
+    static final String REPLICA_URL = "jdbc:postgresql://localhost:5432/hogwarts?ApplicationName=school-replica";
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private ReplicaRoutingDataSource replicaRoutingDataSource;
+
+    @Autowired
+    private TransactionSnapshots transactionSnapshots;
+
+    @Autowired
+    private HikariDataSource primaryDataSource;
+
+    @Value("${spring.datasource.username}")
+    private String username;
+
+    @Value("${spring.datasource.password}")
+    private String password;
+
+    @BeforeEach
+    public void setUp() {
+        replicaRoutingDataSource.checkReplicas();
+    }
+
+    @Test
+    public void testReadOnlyTransactionsGoToHealthyReplica() {
+        List<ReplicaRoutingDataSource.Replica> replicas = replicaRoutingDataSource.getReplicas();
+        assertTrue(replicas.get(0).isHealthy());
+        assertEquals(0, replicas.get(0).getLagMs());
+        assertFalse(replicas.get(1).isHealthy());
+        assertEquals(-1, replicas.get(1).getLagMs());
+
+        // Недоступная реплика пропускается при каждом чтении
+        for (int i = 0; i < 4; i++) {
+            assertEquals("school-replica", applicationName(true));
+        }
+        assertNotEquals("school-replica", applicationName(false));
+        assertEquals(0, replicaRoutingDataSource.getFallbacks());
+    }
+
+    @Test
+    public void testOnPrimaryPinsReadOnlyTransactionToPrimary() {
+        assertNotEquals("school-replica", DataSourceRouting.onPrimary(() -> applicationName(true)));
+    }
+
+    @Test
+    public void testSnapshotReadsGoToPrimary() {
+        // Перестройки структур в памяти сравнивают снимок с id транзакций основного сервера
+        List<String> settings = transactionSnapshots.read(() -> List.of(
+                jdbcTemplate.queryForObject("SELECT current_setting('application_name')", String.class),
+                jdbcTemplate.queryForObject("SELECT current_setting('transaction_isolation')", String.class))).value();
+        assertNotEquals("school-replica", settings.get(0));
+        assertEquals("repeatable read", settings.get(1));
+    }
+
+    @Test
+    public void testServiceReadsAndWritesThroughRouting() {
+        Student student = restTemplate.postForObject("/students", new Student("Иван Репликин", 20), Student.class);
+        student.setAge(21);
+        restTemplate.put("/students/" + student.getId(), student);
+
+        ResponseEntity<Student> response = restTemplate.getForEntity("/students/" + student.getId(), Student.class);
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(21, response.getBody().getAge());
+    }
+
+    @Test
+    public void testLaggingReplicaFallsBackToPrimary() throws SQLException {
+        HikariConfig config = new HikariConfig();
+        config.setJdbcUrl(REPLICA_URL);
+        config.setUsername(username);
+        config.setPassword(password);
+        config.setMaximumPoolSize(1);
+        // Отставание 0 больше допустимого -1: реплика всегда считается отстающей
+        try (ReplicaRoutingDataSource routing = new ReplicaRoutingDataSource(primaryDataSource,
+                List.of(new HikariDataSource(config)), -1)) {
+            routing.checkReplicas();
+            assertFalse(routing.getReplicas().get(0).isHealthy());
+
+            String name = new TransactionTemplate(transactionManager, readOnly(true)).execute(status -> {
+                try (Connection connection = routing.getConnection()) {
+                    return applicationName(connection);
+                } catch (SQLException e) {
+                    throw new IllegalStateException(e);
+                }
+            });
+            assertNotEquals("school-replica", name);
+            assertEquals(1, routing.getFallbacks());
+        }
+    }
+
+    private String applicationName(boolean readOnly) {
+        return new TransactionTemplate(transactionManager, readOnly(readOnly)).execute(status ->
+                jdbcTemplate.queryForObject("SELECT current_setting('application_name')", String.class));
+    }
+
+    private static DefaultTransactionDefinition readOnly(boolean readOnly) {
+        DefaultTransactionDefinition definition = new DefaultTransactionDefinition();
+        definition.setReadOnly(readOnly);
+        return definition;
+    }
+
+    private static String applicationName(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery("SELECT current_setting('application_name')")) {
+            resultSet.next();
+            return resultSet.getString(1);
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package ru.hogwarts.school.controllerTests;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Запоминает SQL, который Hibernate отправляет в БД. Подключается в тестах свойством
+// spring.jpa.properties.hibernate.session_factory.statement_inspector
+public class SqlStatementCapture implements StatementInspector {
+
+    private static final List<String> statements = new ArrayList<>();
+
+    @Override
+    public String inspect(String sql) {
+        synchronized (statements) {
+            statements.add(sql);
+        }
+        return sql;
+    }
+
+    public static void clear() {
+        synchronized (statements) {
+            statements.clear();
+        }
+    }
+
+    public static List<String> statements() {
+        synchronized (statements) {
+            return List.copyOf(statements);
+        }
+    }
+}
@@ -2,14 +2,24 @@ package ru.hogwarts.school.controllerTests;
 
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.autoconfigure.actuate.observability.AutoConfigureObservability;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.web.client.TestRestTemplate;
 import org.springframework.boot.test.web.server.LocalServerPort;
 import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.util.UriComponentsBuilder;
+import ru.hogwarts.school.dto.BatchJobStatus;
+import ru.hogwarts.school.dto.BulkImportResult;
+import ru.hogwarts.school.dto.CursorPage;
+import ru.hogwarts.school.dto.StudentCount;
+import ru.hogwarts.school.dto.StudentStats;
 import ru.hogwarts.school.model.Faculty;
 import ru.hogwarts.school.model.Student;
 
@@ -17,12 +27,19 @@ import org.springframework.http.HttpEntity;
 
 import ru.hogwarts.school.repository.FacultyRepository;
 import ru.hogwarts.school.repository.StudentRepository;
+import ru.hogwarts.school.service.StudentAgeSnapshot;
 
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.*;
 
 @SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@AutoConfigureObservability(tracing = false)
 public class StudentControllerTests {
 
     @LocalServerPort
@@ -37,6 +54,15 @@ public class StudentControllerTests {
     @Autowired
     private FacultyRepository facultyRepository;
 
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private StudentAgeSnapshot studentAgeSnapshot;
+
+    @Value("${students.batch.chunk-size:1000}")
+    private int batchChunkSize;
+
     @Test
     public void testCreateStudent() {
         Student newStudent = new Student("Иван Иванов", 25);
@@ -87,6 +113,58 @@ public class StudentControllerTests {
         assertTrue(response.getBody().size() > 0);
     }
 
+    @Test
+    public void testGetStudentsPageByCursor() {
+        Student student1 = studentRepository.save(new Student("Курсор Первый", 20));
+        Student student2 = studentRepository.save(new Student("Курсор Второй", 21));
+        Student student3 = studentRepository.save(new Student("Курсор Третий", 22));
+
+        long after = student1.getId() - 1;
+
+        ResponseEntity<CursorPage<Student>> firstPage = restTemplate.exchange(
+                "/students?after=" + after + "&limit=2", HttpMethod.GET, null,
+                new ParameterizedTypeReference<CursorPage<Student>>() {});
+
+        assertEquals(HttpStatus.OK, firstPage.getStatusCode());
+        assertEquals(2, firstPage.getBody().items().size());
+        assertEquals(student1.getId(), firstPage.getBody().items().get(0).getId());
+        assertEquals(student2.getId(), firstPage.getBody().nextCursor());
+
+        // Следующая страница начинается сразу после курсора
+        ResponseEntity<CursorPage<Student>> secondPage = restTemplate.exchange(
+                "/students?after=" + firstPage.getBody().nextCursor() + "&limit=2", HttpMethod.GET, null,
+                new ParameterizedTypeReference<CursorPage<Student>>() {});
+
+        assertEquals(HttpStatus.OK, secondPage.getStatusCode());
+        assertEquals(student3.getId(), secondPage.getBody().items().get(0).getId());
+    }
+
+    // Количество строк можно увеличить для проверки на малой куче:
+    // mvn test -Dtest=StudentControllerTests#testExportStudents -Dexport.test.rows=2000000 -DargLine=-Xmx64m
+    @Test
+    public void testExportStudents() {
+        int rows = Integer.getInteger("export.test.rows", 10_000);
+        String prefix = "export_" + System.nanoTime() + "_";
+        jdbcTemplate.update("INSERT INTO student (id, name, age) " +
+                "SELECT nextval('student_seq'), ? || g, 20 FROM generate_series(1, ?) AS g", prefix, rows);
+
+        try {
+            // Читаем ответ построчно, не собирая его целиком в памяти
+            long exported = restTemplate.execute("/students/export", HttpMethod.GET, null, response -> {
+                assertEquals(HttpStatus.OK, response.getStatusCode());
+                assertTrue(MediaType.APPLICATION_NDJSON.isCompatibleWith(response.getHeaders().getContentType()));
+                try (BufferedReader reader = new BufferedReader(
+                        new InputStreamReader(response.getBody(), StandardCharsets.UTF_8))) {
+                    return reader.lines().filter(line -> line.contains(prefix)).count();
+                }
+            });
+
+            assertEquals(rows, exported);
+        } finally {
+            jdbcTemplate.update("DELETE FROM student WHERE name LIKE ?", prefix + "%");
+        }
+    }
+
     @Test
     public void testUpdateStudent() {
         Student newStudent = new Student("Иван Иванов", 20);
@@ -176,6 +254,133 @@ public class StudentControllerTests {
         assertTrue(response.getBody().size() > 0);
     }
 
+    @Test
+    public void testGetNamesByPrefix() {
+        String prefix = "Автодоп" + System.nanoTime();
+        Student ivan = restTemplate.postForObject("/students", new Student(prefix + " Иван", 20), Student.class);
+        Student maria = restTemplate.postForObject("/students", new Student(prefix.toLowerCase() + " Мария", 21), Student.class);
+        restTemplate.postForObject("/students", new Student(prefix.toUpperCase() + " Петр", 22), Student.class);
+
+        // Поиск без учета регистра, результат ограничен limit
+        List<String> names = restTemplate.exchange("/students/names?prefix=" + prefix.toUpperCase() + "&limit=10",
+                HttpMethod.GET, null, new ParameterizedTypeReference<List<String>>() {}).getBody();
+        assertEquals(3, names.size());
+        assertTrue(names.contains(prefix + " Иван"));
+
+        List<String> limited = restTemplate.exchange("/students/names?prefix=" + prefix + "&limit=2",
+                HttpMethod.GET, null, new ParameterizedTypeReference<List<String>>() {}).getBody();
+        assertEquals(2, limited.size());
+
+        // Переименование и удаление сразу отражаются в индексе
+        restTemplate.put("/students/" + ivan.getId(), new Student("Переименован " + prefix, 20));
+        restTemplate.delete("/students/" + maria.getId());
+        List<String> remaining = restTemplate.exchange("/students/names?prefix=" + prefix.toLowerCase(),
+                HttpMethod.GET, null, new ParameterizedTypeReference<List<String>>() {}).getBody();
+        assertEquals(List.of(prefix.toUpperCase() + " Петр"), remaining);
+    }
+
+    @Test
+    public void testGetStudentCountModes() {
+        restTemplate.postForObject("/students", new Student("Счетчик", 20), Student.class);
+
+        StudentCount exact = restTemplate.getForObject("/students/count?mode=exact", StudentCount.class);
+        assertEquals(StudentCount.Mode.EXACT, exact.mode());
+        assertEquals(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM student", Long.class), exact.count());
+
+        StudentCount cached = restTemplate.getForObject("/students/count?mode=cached", StudentCount.class);
+        assertEquals(StudentCount.Mode.CACHED, cached.mode());
+        assertNotNull(cached.asOf());
+        assertTrue(cached.stalenessMs() >= 0);
+
+        // Оценка берется из статистики планировщика (или из счетчика, если ANALYZE еще не было)
+        jdbcTemplate.execute("ANALYZE student");
+        StudentCount estimate = restTemplate.getForObject("/students/count?mode=estimate", StudentCount.class);
+        assertEquals(StudentCount.Mode.ESTIMATE, estimate.mode());
+        assertTrue(estimate.count() > 0);
+
+        // Без mode ответ остается прежним — просто число
+        assertEquals(HttpStatus.OK, restTemplate.getForEntity("/students/count", Long.class).getStatusCode());
+        assertEquals(HttpStatus.BAD_REQUEST,
+                restTemplate.getForEntity("/students/count?mode=fast", String.class).getStatusCode());
+    }
+
+    @Test
+    public void testBulkImportJson() {
+        Faculty faculty = facultyRepository.save(new Faculty("Пуффендуй", "желтый"));
+        String prefix = "bulk_json_" + System.nanoTime() + "_";
+        String body = "[" +
+                "{\"name\": \"" + prefix + "1\", \"age\": 11, \"facultyId\": " + faculty.getId() + "}," +
+                "{\"name\": \"" + prefix + "2\", \"age\": \"много\"}," +
+                "{\"name\": \"" + prefix + "3\", \"age\": 12, \"facultyId\": -1}," +
+                "{\"name\": \"" + prefix + "4\", \"age\": 13}" +
+                "]";
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        ResponseEntity<BulkImportResult> response = restTemplate.postForEntity(
+                "/students/bulk", new HttpEntity<>(body, headers), BulkImportResult.class);
+
+        // Ошибочные строки пропускаются и перечисляются в ответе, остальные сохраняются
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        BulkImportResult result = response.getBody();
+        assertEquals(4, result.received());
+        assertEquals(2, result.imported());
+        assertEquals(List.of(2L, 3L), result.errors().stream().map(BulkImportResult.RowError::row).toList());
+        assertEquals(2, jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM student WHERE name LIKE ?", Integer.class, prefix + "%"));
+        assertEquals(faculty.getId(), jdbcTemplate.queryForObject(
+                "SELECT faculty_id FROM student WHERE name = ?", Long.class, prefix + "1"));
+    }
+
+    @Test
+    public void testBulkImportReportsOnlyRejectedRows() {
+        String prefix = "bulk_rows_" + System.nanoTime() + "_";
+        String body = "[" +
+                "{\"name\": \"" + prefix + "1\", \"age\": 11}," +
+                "{\"name\": \"" + prefix + "2\", \"age\": 20.7}," +
+                "{\"name\": \"" + prefix + "3\", \"age\": 12}," +
+                "{\"name\": \"" + prefix + "x".repeat(300) + "\", \"age\": 13}," +
+                "{\"name\": \"" + prefix + "5\", \"age\": 14}" +
+                "]";
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        BulkImportResult result = restTemplate.postForObject(
+                "/students/bulk", new HttpEntity<>(body, headers), BulkImportResult.class);
+
+        // Дробный возраст не округляется, а слишком длинное имя БД отклоняет только для своей строки:
+        // остальные строки той же пачки сохраняются
+        assertEquals(5, result.received());
+        assertEquals(3, result.imported());
+        assertEquals(List.of(2L, 4L), result.errors().stream().map(BulkImportResult.RowError::row).toList());
+        assertTrue(result.errors().get(1).message().startsWith("Rejected by database"));
+        assertEquals(3, jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM student WHERE name LIKE ?", Integer.class, prefix + "%"));
+        jdbcTemplate.update("DELETE FROM student WHERE name LIKE ?", prefix + "%");
+    }
+
+    @Test
+    public void testBulkImportCsv() {
+        String prefix = "bulk_csv_" + System.nanoTime() + "_";
+        StringBuilder body = new StringBuilder("name,age\n");
+        for (int i = 0; i < 2500; i++) {
+            body.append(prefix).append(i).append(',').append(11 + i % 7).append('\n');
+        }
+        body.append(prefix).append("bad\n");
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.parseMediaType("text/csv"));
+        BulkImportResult result = restTemplate.postForObject(
+                "/students/bulk", new HttpEntity<>(body.toString(), headers), BulkImportResult.class);
+
+        assertEquals(2501, result.received());
+        assertEquals(2500, result.imported());
+        assertEquals(2501, result.errors().get(0).row());
+        assertEquals(2500, jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM student WHERE name LIKE ?", Integer.class, prefix + "%"));
+        jdbcTemplate.update("DELETE FROM student WHERE name LIKE ?", prefix + "%");
+    }
+
     @Test
     public void testAssignFacultyToStudent() {
         Faculty faculty = new Faculty("Гринвич", "зеленый");
@@ -223,4 +428,99 @@ public class StudentControllerTests {
         assertEquals(faculty.getName(), response.getBody().getName());
         assertEquals(faculty.getColor(), response.getBody().getColor());
     }
+
+    @Test
+    public void testGetStudentStatsFollowsChanges() {
+        // Другие тесты меняют таблицу в обход сервиса — начинаем со снимка, совпадающего с БД
+        studentAgeSnapshot.rebuild();
+        Faculty faculty = facultyRepository.save(new Faculty("Статистический", "серый"));
+        List<Student> students = new ArrayList<>();
+        for (int age : new int[]{20, 30, 40, 50}) {
+            Student student = restTemplate.postForObject("/students", new Student("Студент Статистический", age), Student.class);
+            restTemplate.put("/students/" + student.getId() + "/faculty/" + faculty.getId(), null);
+            students.add(student);
+        }
+
+        StudentStats stats = restTemplate.getForObject("/students/stats", StudentStats.class);
+        StudentStats.FacultyAgeStats byFaculty = facultyStats(stats, faculty.getId());
+        assertEquals(4, byFaculty.count());
+        assertEquals(20, byFaculty.minAge());
+        assertEquals(50, byFaculty.maxAge());
+        assertEquals(35.0, byFaculty.meanAge());
+        assertEquals(35.0, byFaculty.medianAge());
+        assertEquals(studentRepository.count(), stats.count());
+        assertEquals(stats.count(), stats.histogram().values().stream().mapToLong(Long::longValue).sum());
+        assertTrue(stats.minAge() <= stats.percentiles().get("p50") && stats.percentiles().get("p99") <= stats.maxAge());
+
+        // Изменения через сервис попадают в снимок без перестройки
+        restTemplate.delete("/students/" + students.get(3).getId());
+        Student older = students.get(0);
+        older.setAge(60);
+        restTemplate.put("/students/" + older.getId(), older);
+
+        byFaculty = facultyStats(restTemplate.getForObject("/students/stats", StudentStats.class), faculty.getId());
+        assertEquals(3, byFaculty.count());
+        assertEquals(30, byFaculty.minAge());
+        assertEquals(60, byFaculty.maxAge());
+        assertEquals(40.0, byFaculty.medianAge());
+        assertEquals(studentRepository.count(), restTemplate.getForObject("/students/stats", StudentStats.class).count());
+    }
+
+    private static StudentStats.FacultyAgeStats facultyStats(StudentStats stats, Long facultyId) {
+        return stats.faculties().stream()
+                .filter(faculty -> facultyId.equals(faculty.facultyId()))
+                .findFirst()
+                .orElseThrow();
+    }
+
+    @Test
+    public void testServiceAndEndpointMetricsInPrometheusFormat() {
+        Student student = studentRepository.save(new Student("Иван Метрикин", 30));
+        restTemplate.getForEntity("/students/" + student.getId(), Student.class);
+
+        ResponseEntity<String> response = restTemplate.getForEntity("/actuator/prometheus", String.class);
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        String metrics = response.getBody();
+        assertNotNull(metrics);
+        // Время метода сервиса с гистограммой для перцентилей
+        assertTrue(metrics.contains("service_method_seconds_count{class=\"StudentService\",exception=\"none\",method=\"getStudent\"} "));
+        assertTrue(metrics.contains("service_method_seconds_bucket{class=\"StudentService\",exception=\"none\",method=\"getStudent\",le="));
+        assertTrue(metrics.contains("http_server_requests_seconds_bucket{error=\"none\",exception=\"none\",method=\"GET\","));
+        // Количество SQL-запросов на метод сервиса и на эндпоинт
+        assertTrue(metrics.contains("service_db_statements_sum{class=\"StudentService\",method=\"getStudent\"} "));
+        assertTrue(metrics.contains("http_server_db_statements_sum{method=\"GET\",uri=\"/students/{id}\"} "));
+    }
+
+    @Test
+    public void testPrintStudentsJobCompletes() throws InterruptedException {
+        for (int i = 0; i < 6; i++) {
+            studentRepository.save(new Student("Студент Печатный " + i, 20 + i));
+        }
+
+        ResponseEntity<BatchJobStatus> response = restTemplate.getForEntity("/students/print-synchronized", BatchJobStatus.class);
+
+        assertEquals(HttpStatus.ACCEPTED, response.getStatusCode());
+        assertNotNull(response.getBody());
+        assertEquals(URI.create("/students/print-jobs/" + response.getBody().id()), response.getHeaders().getLocation());
+
+        // Ждем завершения задания по ссылке из Location
+        BatchJobStatus job = response.getBody();
+        for (int i = 0; i < 100 && job.state() == BatchJobStatus.State.RUNNING; i++) {
+            Thread.sleep(100);
+            job = restTemplate.getForObject(response.getHeaders().getLocation().toString(), BatchJobStatus.class);
+        }
+        assertEquals(BatchJobStatus.State.COMPLETED, job.state());
+        assertEquals(job.totalChunks(), job.completedChunks());
+        assertEquals(job.totalChunks(), job.chunks().size());
+        assertEquals(1.0, job.progress());
+        assertEquals(studentRepository.count(), job.processedItems());
+        assertNotNull(job.finishedAt());
+        // Части режутся по существующим строкам: пропуски в id не добавляют пустых частей
+        assertEquals((studentRepository.count() + batchChunkSize - 1) / batchChunkSize, job.totalChunks());
+        assertTrue(job.chunks().stream().allMatch(chunk -> chunk.items() > 0));
+
+        assertEquals(HttpStatus.NOT_FOUND,
+                restTemplate.getForEntity("/students/print-jobs/" + Long.MAX_VALUE, String.class).getStatusCode());
+    }
 }
@@ -6,17 +6,28 @@ import org.junit.jupiter.api.Test;
 import org.mockito.InjectMocks;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.http.MediaType;
 import org.springframework.test.context.bean.override.mockito.MockitoBean;
 import org.springframework.test.web.servlet.MockMvc;
+import ru.hogwarts.school.batch.BatchJobRejectedException;
 import ru.hogwarts.school.controller.StudentController;
+import ru.hogwarts.school.dto.BatchJobStatus;
+import ru.hogwarts.school.dto.CursorPage;
+import ru.hogwarts.school.dto.StudentCount;
+import ru.hogwarts.school.dto.StudentStats;
 import ru.hogwarts.school.model.Faculty;
 import ru.hogwarts.school.model.Student;
 import ru.hogwarts.school.service.FacultyService;
+import ru.hogwarts.school.service.StudentExportService;
+import ru.hogwarts.school.service.StudentImportService;
 import ru.hogwarts.school.service.StudentService;
 
-import java.util.Arrays;
+import java.time.Instant;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
 
 import static org.hamcrest.Matchers.hasSize;
 import static org.mockito.Mockito.*;
@@ -35,6 +46,12 @@ public class StudentControllerWithMockTest {
     @MockitoBean
     private FacultyService facultyService;
 
+    @MockitoBean
+    private StudentExportService studentExportService;
+
+    @MockitoBean
+    private StudentImportService studentImportService;
+
     @InjectMocks
     private StudentController studentController;
 
@@ -103,6 +120,77 @@ public class StudentControllerWithMockTest {
         verify(studentService, times(1)).getAllStudents();
     }
 
+    @Test
+    public void testGetStudentsPage() throws Exception {
+        Student student1 = new Student("Иван", 20);
+        student1.setId(11L);
+        Student student2 = new Student("Мария", 22);
+        student2.setId(12L);
+
+        // Возвращаем страницу из двух студентов и курсор на следующую
+        when(studentService.getStudentsAfter(10L, 2)).thenReturn(new CursorPage<>(List.of(student1, student2), 12L));
+
+        mockMvc.perform(get("/students")
+                        .param("after", "10")
+                        .param("limit", "2"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items", hasSize(2)))
+                .andExpect(jsonPath("$.items[0].name").value("Иван"))
+                .andExpect(jsonPath("$.items[1].name").value("Мария"))
+                .andExpect(jsonPath("$.nextCursor").value(12));
+
+        verify(studentService, times(1)).getStudentsAfter(10L, 2);
+        verify(studentService, never()).getAllStudents();
+    }
+
+    @Test
+    public void testGetNamesByPrefix() throws Exception {
+        when(studentService.getNamesByPrefix("ал", 5)).thenReturn(List.of("Алексей", "Алина"));
+
+        mockMvc.perform(get("/students/names")
+                        .param("prefix", "ал")
+                        .param("limit", "5"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(2)))
+                .andExpect(jsonPath("$[0]").value("Алексей"));
+
+        verify(studentService, times(1)).getNamesByPrefix("ал", 5);
+    }
+
+    @Test
+    public void testGetStudentCountByMode() throws Exception {
+        when(studentService.getStudentCount(StudentCount.Mode.ESTIMATE))
+                .thenReturn(new StudentCount(1000L, StudentCount.Mode.ESTIMATE, Instant.parse("2025-01-01T00:00:00Z"), 5000L));
+
+        mockMvc.perform(get("/students/count").param("mode", "estimate"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.count").value(1000))
+                .andExpect(jsonPath("$.mode").value("ESTIMATE"))
+                .andExpect(jsonPath("$.stalenessMs").value(5000));
+
+        mockMvc.perform(get("/students/count").param("mode", "fast"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    public void testGetStudentStats() throws Exception {
+        StudentStats stats = new StudentStats(3, 20, 40, 30.0, 30.0, Map.of("p50", 30, "p99", 40), 1,
+                new TreeMap<>(Map.of(20, 1L, 30, 1L, 40, 1L)),
+                List.of(new StudentStats.FacultyAgeStats(7L, 2, 20, 30, 25.0, 25.0),
+                        new StudentStats.FacultyAgeStats(null, 1, 40, 40, 40.0, 40.0)));
+        when(studentService.getStudentStats()).thenReturn(stats);
+
+        mockMvc.perform(get("/students/stats"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.count").value(3))
+                .andExpect(jsonPath("$.medianAge").value(30.0))
+                .andExpect(jsonPath("$.percentiles.p99").value(40))
+                .andExpect(jsonPath("$.histogram.20").value(1))
+                .andExpect(jsonPath("$.faculties", hasSize(2)))
+                .andExpect(jsonPath("$.faculties[0].facultyId").value(7))
+                .andExpect(jsonPath("$.faculties[1].facultyId").doesNotExist());
+    }
+
     @Test
     public void testUpdateStudent() throws Exception {
         Student updatedStudent = new Student("Иван Федоров", 22);
@@ -144,7 +232,7 @@ public class StudentControllerWithMockTest {
         student3.setId(3L);
 
         // Возвращаем список студентов с возрастом 20
-        when(studentService.getStudentsByAge(20)).thenReturn(List.of(student1, student2));
+        when(studentService.getStudentsByAge(20, PageRequest.of(0, 50))).thenReturn(List.of(student1, student2));
 
         // Выполнение GET-запроса для получения студентов по возрасту
         mockMvc.perform(get("/students/age/{age}", 20))
@@ -156,7 +244,18 @@ public class StudentControllerWithMockTest {
                 .andExpect(jsonPath("$[1].age").value(20));
 
         // Проверяем, что метод getStudentsByAge был вызван один раз
-        verify(studentService, times(1)).getStudentsByAge(20);
+        verify(studentService, times(1)).getStudentsByAge(20, PageRequest.of(0, 50));
+    }
+
+    @Test
+    public void testGetStudentsByAgeClampsPaging() throws Exception {
+        when(studentService.getStudentsByAge(20, PageRequest.of(0, CursorPage.MAX_LIMIT))).thenReturn(List.of());
+
+        // Отрицательная страница и слишком большой размер не приводят к ошибке 500 и выборке всей возрастной группы
+        mockMvc.perform(get("/students/age/{age}", 20).param("page", "-1").param("size", "10000000"))
+                .andExpect(status().isOk());
+
+        verify(studentService, times(1)).getStudentsByAge(20, PageRequest.of(0, CursorPage.MAX_LIMIT));
     }
 
     @Test
@@ -232,44 +331,58 @@ public class StudentControllerWithMockTest {
 
     @Test
     public void testPrintStudentsInParallel() throws Exception {
-        // Замокированные студенты внутри теста
-        List<Student> students = Arrays.asList(
-                new Student("Иван Иванов", 20),
-                new Student("Алиса Федорова", 22),
-                new Student("Рон Уизли", 21),
-                new Student("Гермиона Грейнджер", 23),
-                new Student("Гарри Поттер", 24),
-                new Student("Давид Давидов", 25)
-        );
-
-        // Мокируем сервис, чтобы он возвращал замокированных студентов
-        when(studentService.getAllStudents()).thenReturn(students);
-
-        // Выполняем запрос и проверяем результат
+        BatchJobStatus job = new BatchJobStatus(7L, "print-student-names-parallel", BatchJobStatus.State.RUNNING,
+                3, 0, 0, 0, 0.0, Instant.now(), null, List.of());
+        when(studentService.printStudentNames(false)).thenReturn(job);
+
+        // Задание запускается в фоне: ответ 202 с состоянием и ссылкой на него
         mockMvc.perform(get("/students/print-parallel"))
-                .andExpect(status().isOk())
-                .andExpect(content().string("Printed 6 student names in parallel (check console)"));
+                .andExpect(status().isAccepted())
+                .andExpect(header().string("Location", "/students/print-jobs/7"))
+                .andExpect(jsonPath("$.state").value("RUNNING"))
+                .andExpect(jsonPath("$.totalChunks").value(3));
+
+        verify(studentService, times(1)).printStudentNames(false);
     }
 
     @Test
     public void testPrintStudentsSynchronized() throws Exception {
-        // Замокированные студенты внутри теста
-        List<Student> students = Arrays.asList(
-                new Student("Иван Иванов", 20),
-                new Student("Алиса Федорова", 22),
-                new Student("Рон Уизли", 21),
-                new Student("Гермиона Грейнджер", 23),
-                new Student("Гарри Поттер", 24),
-                new Student("Давид Давидов", 25)
-        );
-
-        // Мокируем сервис, чтобы он возвращал замокированных студентов
-        when(studentService.getAllStudents()).thenReturn(students);
-
-        // Выполняем запрос и проверяем результат
+        BatchJobStatus job = new BatchJobStatus(8L, "print-student-names-synchronized", BatchJobStatus.State.RUNNING,
+                3, 0, 0, 0, 0.0, Instant.now(), null, List.of());
+        when(studentService.printStudentNames(true)).thenReturn(job);
+
         mockMvc.perform(get("/students/print-synchronized"))
-            .andExpect(status().isOk())
-            .andExpect(content().string("Printed 6 student names in synchronized mode (check console)"));
-       }
-}
+                .andExpect(status().isAccepted())
+                .andExpect(header().string("Location", "/students/print-jobs/8"))
+                .andExpect(jsonPath("$.name").value("print-student-names-synchronized"));
+
+        verify(studentService, times(1)).printStudentNames(true);
+    }
 
+    @Test
+    public void testPrintStudentsRejectedWhenTooManyJobs() throws Exception {
+        when(studentService.printStudentNames(false)).thenThrow(new BatchJobRejectedException(8));
+
+        mockMvc.perform(get("/students/print-parallel"))
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(header().string("Retry-After", "1"));
+    }
+
+    @Test
+    public void testGetPrintJob() throws Exception {
+        BatchJobStatus job = new BatchJobStatus(7L, "print-student-names-parallel", BatchJobStatus.State.COMPLETED,
+                1, 1, 0, 6, 1.0, Instant.now(), Instant.now(),
+                List.of(new BatchJobStatus.ChunkTiming(1, 1000, 6, 3, null)));
+        when(studentService.getBatchJob(7L)).thenReturn(Optional.of(job));
+        when(studentService.getBatchJob(9L)).thenReturn(Optional.empty());
+
+        mockMvc.perform(get("/students/print-jobs/{jobId}", 7L))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.state").value("COMPLETED"))
+                .andExpect(jsonPath("$.processedItems").value(6))
+                .andExpect(jsonPath("$.chunks[0].items").value(6));
+
+        mockMvc.perform(get("/students/print-jobs/{jobId}", 9L))
+                .andExpect(status().isNotFound());
+    }
+}
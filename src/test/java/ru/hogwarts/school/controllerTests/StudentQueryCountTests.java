@@ -0,0 +1,90 @@
+package ru.hogwarts.school.controllerTests;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import ru.hogwarts.school.model.Faculty;
+import ru.hogwarts.school.model.Student;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Проверяет количество SQL-запросов на эндпоинт: студенты с разными факультетами не должны
+// порождать отдельный запрос на каждый факультет (N+1)
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = {"students.aggregates.reconcile-interval-ms=3600000",
+                "spring.jpa.properties.hibernate.session_factory.statement_inspector=ru.hogwarts.school.controllerTests.SqlStatementCapture"})
+public class StudentQueryCountTests {
+
+    private static final int AGE = 87;
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    private final List<Student> students = new ArrayList<>();
+    private Faculty faculty;
+
+    @BeforeEach
+    public void setUp() {
+        // Три факультета по два студента одного возраста
+        for (int i = 0; i < 3; i++) {
+            faculty = restTemplate.postForObject("/faculty", new Faculty("Факультет N+1 " + i, "серый"), Faculty.class);
+            for (int j = 0; j < 2; j++) {
+                Student student = restTemplate.postForObject("/students", new Student("Студент N+1 " + i + j, AGE), Student.class);
+                students.add(restTemplate.exchange("/students/" + student.getId() + "/faculty/" + faculty.getId(),
+                        HttpMethod.PUT, null, Student.class).getBody());
+            }
+        }
+    }
+
+    @Test
+    public void testGetStudentLoadsFacultyInOneQuery() {
+        Student student = students.get(0);
+        assertStatementCount(1, "/students/" + student.getId());
+    }
+
+    @Test
+    public void testStudentListsLoadFacultiesInOneQuery() {
+        assertStatementCount(1, "/students");
+        assertStatementCount(1, "/students?limit=10&after=" + (students.get(0).getId() - 1));
+        assertStatementCount(1, "/students/age/" + AGE);
+        assertStatementCount(1, "/students/age/range?min=" + AGE + "&max=" + AGE);
+        assertStatementCount(1, "/students/age/range?min=" + AGE + "&max=" + AGE + "&limit=10");
+        assertStatementCount(1, "/students/last-five");
+    }
+
+    @Test
+    public void testFacultyStudentsLoadInOneQuery() {
+        assertStatementCount(1, "/faculty/" + faculty.getId() + "/students");
+        assertStatementCount(1, "/faculty/" + faculty.getId() + "/students?limit=10");
+        assertStatementCount(1, "/students/" + students.get(0).getId() + "/faculty");
+    }
+
+    @Test
+    public void testAggregatesDoNotQueryDatabase() {
+        assertStatementCount(0, "/students/count");
+        assertStatementCount(0, "/students/average-age");
+    }
+
+    @Test
+    public void testSerializedStudentContainsFaculty() {
+        Student student = restTemplate.getForObject("/students/" + students.get(0).getId(), Student.class);
+        assertNotNull(student.getFaculty());
+        assertEquals(students.get(0).getFaculty().getName(), student.getFaculty().getName());
+    }
+
+    private void assertStatementCount(int expected, String url) {
+        SqlStatementCapture.clear();
+        ResponseEntity<String> response = restTemplate.getForEntity(url, String.class);
+        assertEquals(HttpStatus.OK, response.getStatusCode(), url);
+        List<String> statements = SqlStatementCapture.statements();
+        assertEquals(expected, statements.size(), url + " -> " + statements);
+    }
+}
@@ -0,0 +1,34 @@
+package ru.hogwarts.school.controllerTests;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.ResponseEntity;
+import ru.hogwarts.school.tracing.TracingEndpoint.TracingStatus;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// /actuator/tracing с настройками по умолчанию: состояние читается, а изменить трассировку через POST нельзя
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+public class TracingAccessTests {
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    @Test
+    public void testTracingIsReadOnlyByDefault() {
+        TracingStatus before = restTemplate.getForObject("/actuator/tracing", TracingStatus.class);
+        assertNotNull(before);
+
+        ResponseEntity<String> response = restTemplate.postForEntity("/actuator/tracing",
+                Map.of("enabled", !before.enabled(), "sampleRate", 0.0), String.class);
+
+        assertFalse(response.getStatusCode().is2xxSuccessful());
+        TracingStatus after = restTemplate.getForObject("/actuator/tracing", TracingStatus.class);
+        assertEquals(before.enabled(), after.enabled());
+        assertEquals(before.sampleRate(), after.sampleRate());
+    }
+}
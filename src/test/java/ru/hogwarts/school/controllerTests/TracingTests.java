@@ -0,0 +1,93 @@
+package ru.hogwarts.school.controllerTests;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import ru.hogwarts.school.model.Student;
+import ru.hogwarts.school.repository.StudentRepository;
+import ru.hogwarts.school.tracing.TraceFileAppender;
+import ru.hogwarts.school.tracing.TracingEndpoint.TracingStatus;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Трассировка вызовов сервисов: запись в файл фоновым appender'ом и управление через /actuator/tracing.
+// Запись по расписанию отключена — тест сбрасывает буфер сам; изменение через POST открыто явно
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = {"management.endpoint.tracing.access=unrestricted", "tracing.enabled=true", "tracing.sample-rate=1.0", "tracing.file=target/trace-test.log",
+                "tracing.flush-interval-ms=3600000"})
+public class TracingTests {
+
+    private static final String GET_STUDENT = " StudentService.getStudent ";
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    @Autowired
+    private StudentRepository studentRepository;
+
+    @Autowired
+    private TraceFileAppender appender;
+
+    @AfterEach
+    public void tearDown() {
+        restTemplate.postForObject("/actuator/tracing", Map.of("enabled", true, "sampleRate", 1.0), TracingStatus.class);
+    }
+
+    @Test
+    public void testServiceCallsAreWrittenToTraceFile() throws IOException {
+        Student student = studentRepository.save(new Student("Иван Трассировкин", 20));
+        long before = traceLines(GET_STUDENT).size();
+
+        restTemplate.getForEntity("/students/" + student.getId(), Student.class);
+        restTemplate.getForEntity("/students/" + (student.getId() + 1_000_000), Student.class);
+        appender.flush();
+
+        List<String> lines = traceLines(GET_STUDENT);
+        assertEquals(before + 2, lines.size());
+        assertTrue(lines.get(lines.size() - 1).matches("\\S+ \\S+ StudentService\\.getStudent \\d+us ok"),
+                lines.get(lines.size() - 1));
+    }
+
+    @Test
+    public void testTracingCanBeSwitchedAtRuntime() {
+        TracingStatus disabled = restTemplate.postForObject("/actuator/tracing", Map.of("enabled", false), TracingStatus.class);
+        assertFalse(disabled.enabled());
+
+        Student student = studentRepository.save(new Student("Иван Трассировкин", 21));
+        restTemplate.getForEntity("/students/" + student.getId(), Student.class);
+
+        TracingStatus status = restTemplate.getForObject("/actuator/tracing", TracingStatus.class);
+        assertEquals(disabled.recorded(), status.recorded());
+
+        TracingStatus enabled = restTemplate.postForObject("/actuator/tracing", Map.of("enabled", true, "sampleRate", 0.5),
+                TracingStatus.class);
+        assertTrue(enabled.enabled());
+        assertEquals(0.5, enabled.sampleRate());
+    }
+
+    @Test
+    public void testInvalidSampleRateIsRejected() {
+        ResponseEntity<String> response = restTemplate.postForEntity("/actuator/tracing", Map.of("sampleRate", 2.0), String.class);
+
+        assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
+        assertEquals(1.0, restTemplate.getForObject("/actuator/tracing", TracingStatus.class).sampleRate());
+    }
+
+    private List<String> traceLines(String marker) throws IOException {
+        Path file = appender.getFile();
+        if (!Files.exists(file)) {
+            return List.of();
+        }
+        return Files.readAllLines(file).stream().filter(line -> line.contains(marker)).toList();
+    }
+}